@@ -0,0 +1,95 @@
+package com.videoplayermc;
+
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 方块放置基准测试
+ * 在内存世界中放置完整帧和增量帧（使用帧自带的变化列表，或跳帧后逐像素比较）
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlockPlacerBenchmark {
+
+    private static final int FRAME_COUNT = 64;
+
+    @Param({"0.01", "0.1", "0.5"})
+    public double changeRate;
+
+    private MemoryWorld world;
+    private List<FrameBuffer> frames;
+    private BlockPlacer placer;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        world = new MemoryWorld();
+        frames = SyntheticFrames.paletteFrames(FRAME_COUNT, changeRate);
+    }
+
+    @Setup(Level.Iteration)
+    public void newPlacer() {
+        placer = new BlockPlacer(world.getWorld(), new Location(world.getWorld(), 4, 64, 8),
+            SyntheticFrames.WIDTH, SyntheticFrames.HEIGHT);
+        placer.placeFrame(frames.get(0));
+        placer.flush(Long.MAX_VALUE);
+        next = 1;
+    }
+
+    /**
+     * 放置完整帧（清除后的第一帧）
+     */
+    @Benchmark
+    public int full() {
+        placer.clear();
+        placer.flush(Long.MAX_VALUE);
+        placer.placeFrame(frames.get(0));
+        return placer.flush(Long.MAX_VALUE);
+    }
+
+    /**
+     * 按帧自带的变化列表增量放置
+     */
+    @Benchmark
+    public int incremental() {
+        return place(1);
+    }
+
+    /**
+     * 跳过一帧，与上一帧逐像素比较后增量放置
+     */
+    @Benchmark
+    public int incrementalDiff() {
+        return place(2);
+    }
+
+    private int place(int step) {
+        if (next >= FRAME_COUNT) {
+            // 回到序列开头，先放置第一帧
+            placer.placeFrame(frames.get(0));
+            placer.flush(Long.MAX_VALUE);
+            next = step;
+        }
+        placer.placeFrame(frames.get(next));
+        next += step;
+        return placer.flush(Long.MAX_VALUE);
+    }
+}
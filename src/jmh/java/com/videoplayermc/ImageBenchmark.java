@@ -0,0 +1,76 @@
+package com.videoplayermc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片处理基准测试
+ * 帧图片转调色板，以及处理视频时直接从 RGB24 像素缓冲区量化和展开
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImageBenchmark {
+
+    private BufferedImage rgbImage;
+    private BufferedImage bgrImage;
+    private ByteBuffer rgb24;
+    private int[] rgb;
+    private FrameBuffer frame;
+
+    @Setup
+    public void setup() {
+        ColorQuantizer.initialize();
+        rgbImage = SyntheticFrames.image(BufferedImage.TYPE_INT_RGB);
+        // ImageIO 读取 RGB PNG 时的图片类型
+        bgrImage = SyntheticFrames.image(BufferedImage.TYPE_3BYTE_BGR);
+        // FFmpeg 滤镜输出的 RGB24 帧
+        rgb24 = ByteBuffer.allocateDirect(SyntheticFrames.WIDTH * SyntheticFrames.HEIGHT * 3);
+        for (int color : SyntheticFrames.rgbFrame()) {
+            rgb24.put((byte) (color >> 16)).put((byte) (color >> 8)).put((byte) color);
+        }
+        rgb24.flip();
+        rgb = new int[SyntheticFrames.WIDTH * SyntheticFrames.HEIGHT];
+        frame = new FrameBuffer(SyntheticFrames.WIDTH, SyntheticFrames.HEIGHT);
+    }
+
+    @Benchmark
+    public FrameBuffer convertIntRgbImage() {
+        VideoManager.convertImageToPalette(rgbImage, rgb, frame);
+        return frame;
+    }
+
+    @Benchmark
+    public FrameBuffer convertBgrImage() {
+        VideoManager.convertImageToPalette(bgrImage, rgb, frame);
+        return frame;
+    }
+
+    @Benchmark
+    public FrameBuffer quantizeRgb24() {
+        ColorQuantizer.quantizePacked(rgb24, SyntheticFrames.WIDTH * 3, SyntheticFrames.WIDTH, SyntheticFrames.HEIGHT,
+            false, 0, frame);
+        return frame;
+    }
+
+    @Benchmark
+    public int[] unpackRgb24() {
+        VideoProcessor.unpackRgb24(rgb24, SyntheticFrames.WIDTH * 3, SyntheticFrames.WIDTH, SyntheticFrames.HEIGHT, rgb);
+        return rgb;
+    }
+}
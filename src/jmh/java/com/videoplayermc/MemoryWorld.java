@@ -0,0 +1,91 @@
+package com.videoplayermc;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * 基准测试用的内存世界
+ * 通过动态代理只实现方块写入用到的方法，方块数据保存在数组中，不需要服务器
+ * 与服务器一样，每次 getBlock 都会创建新的方块对象
+ */
+public final class MemoryWorld {
+
+    // 覆盖的方块范围（x 0 - 127，z 0 - 15，y 0 - 383），足够放下一个屏幕
+    private static final int SIZE_X = 128;
+    private static final int SIZE_Z = 16;
+    private static final int HEIGHT = 384;
+
+    private final BlockData[] blocks = new BlockData[SIZE_X * SIZE_Z * HEIGHT];
+    private final World world;
+    private long writes;
+
+    public MemoryWorld() {
+        this.world = (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getChunkAt":
+                        return chunk((Integer) args[0], (Integer) args[1]);
+                    case "getMinHeight":
+                        return 0;
+                    case "getMaxHeight":
+                        return HEIGHT;
+                    case "getName":
+                        return "benchmark";
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    private Chunk chunk(int chunkX, int chunkZ) {
+        return (Chunk) Proxy.newProxyInstance(Chunk.class.getClassLoader(), new Class<?>[]{Chunk.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getBlock":
+                        return block(chunkX * 16 + (Integer) args[0], (Integer) args[1], chunkZ * 16 + (Integer) args[2]);
+                    case "getX":
+                        return chunkX;
+                    case "getZ":
+                        return chunkZ;
+                    case "getWorld":
+                        return world;
+                    case "isLoaded":
+                        return true;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    private Block block(int x, int y, int z) {
+        int index = (x * SIZE_Z + z) * HEIGHT + y;
+        return (Block) Proxy.newProxyInstance(Block.class.getClassLoader(), new Class<?>[]{Block.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "setBlockData":
+                        blocks[index] = (BlockData) args[0];
+                        writes++;
+                        return null;
+                    case "getBlockData":
+                        return blocks[index];
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * 获取累计的方块写入次数
+     */
+    public long getWrites() {
+        return writes;
+    }
+}
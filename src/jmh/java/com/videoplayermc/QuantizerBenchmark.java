@@ -0,0 +1,107 @@
+package com.videoplayermc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 颜色量化基准测试
+ * 查找表生成、单个颜色量化和整帧量化
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QuantizerBenchmark {
+
+    private int[] rgb;
+    private FrameBuffer frame;
+    private Palette[] largePalette;
+
+    @Setup
+    public void setup() {
+        ColorQuantizer.initialize();
+        rgb = SyntheticFrames.rgbFrame();
+        frame = new FrameBuffer(SyntheticFrames.WIDTH, SyntheticFrames.HEIGHT);
+        largePalette = SyntheticFrames.palette(Palette.MAX_COLORS);
+    }
+
+    /**
+     * 生成完整查找表（16.7M 项）
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public byte[] buildTable() {
+        return ColorQuantizer.buildTable(Palette.getAllColors(), ColorMetric.WEIGHTED_RGB);
+    }
+
+    /**
+     * 生成 256 种颜色调色板的完整查找表
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public byte[] buildTableLargePalette() {
+        return ColorQuantizer.buildTable(largePalette, ColorMetric.WEIGHTED_RGB);
+    }
+
+    /**
+     * 使用 CIELAB 距离生成 256 种颜色调色板的完整查找表
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public byte[] buildTableLargePaletteLab() {
+        return ColorQuantizer.buildTable(largePalette, ColorMetric.CIELAB);
+    }
+
+    /**
+     * 逐个颜色量化一帧的像素
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void quantizeIndex(Blackhole blackhole) {
+        for (int color : rgb) {
+            blackhole.consume(ColorQuantizer.quantizeIndex(color >> 16 & 0xFF, color >> 8 & 0xFF, color & 0xFF));
+        }
+    }
+
+    /**
+     * 批量量化一帧
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public FrameBuffer quantizeFrame() {
+        ColorQuantizer.quantizeFrame(rgb, SyntheticFrames.WIDTH, SyntheticFrames.HEIGHT, frame);
+        return frame;
+    }
+
+    /**
+     * 使用有序抖动批量量化一帧
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public FrameBuffer quantizeFrameDithered() {
+        ColorQuantizer.quantizeFrameDithered(rgb, SyntheticFrames.WIDTH, SyntheticFrames.HEIGHT, true,
+            ColorQuantizer.DEFAULT_DITHER_STRENGTH, frame);
+        return frame;
+    }
+}
@@ -0,0 +1,99 @@
+package com.videoplayermc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 帧数据文件基准测试
+ * 保存、完整加载（并行解压）、压缩文件顺序读取和未压缩文件内存映射顺序读取，按每帧像素变化比例分组
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SerializerBenchmark {
+
+    @Param({"200"})
+    public int frameCount;
+
+    @Param({"0.01", "0.1", "0.5"})
+    public double changeRate;
+
+    private List<FrameBuffer> frames;
+    private File saveFile;
+    private File loadFile;
+    private File mappedFile;
+    private FrameBuffer frame;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        frames = SyntheticFrames.paletteFrames(frameCount, changeRate);
+        saveFile = File.createTempFile("vmfr-save", ".vmfr");
+        loadFile = File.createTempFile("vmfr-load", ".vmfr");
+        FrameSerializer.saveFrames(frames, loadFile);
+        mappedFile = File.createTempFile("vmfr-mapped", ".vmfr");
+        try (FrameWriter writer = new FrameWriter(mappedFile, SyntheticFrames.WIDTH, SyntheticFrames.HEIGHT,
+            FrameSerializer.DEFAULT_KEYFRAME_INTERVAL, false)) {
+            for (FrameBuffer f : frames) {
+                writer.writeFrame(f);
+            }
+        }
+        frame = new FrameBuffer(SyntheticFrames.WIDTH, SyntheticFrames.HEIGHT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        saveFile.delete();
+        loadFile.delete();
+        mappedFile.delete();
+    }
+
+    @Benchmark
+    public File save() throws IOException {
+        FrameSerializer.saveFrames(frames, saveFile);
+        return saveFile;
+    }
+
+    @Benchmark
+    public List<FrameBuffer> load() throws IOException {
+        return FrameSerializer.loadFrames(loadFile);
+    }
+
+    @Benchmark
+    public FrameBuffer readCompressed() throws IOException {
+        try (CompressedFrameSource source = new CompressedFrameSource(loadFile)) {
+            for (int i = 0; i < source.getFrameCount(); i++) {
+                source.readFrame(i, frame);
+            }
+        }
+        return frame;
+    }
+
+    @Benchmark
+    public FrameBuffer readMapped() throws IOException {
+        try (MappedFrameSource source = new MappedFrameSource(mappedFile)) {
+            for (int i = 0; i < source.getFrameCount(); i++) {
+                source.readFrame(i, frame);
+            }
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,97 @@
+package com.videoplayermc;
+
+import org.bukkit.Material;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试用的合成帧序列
+ * 使用固定种子生成，每帧按指定比例随机改变像素，结果在任何机器上都可复现
+ */
+public final class SyntheticFrames {
+
+    public static final int WIDTH = VideoProcessor.getTargetWidth();
+    public static final int HEIGHT = VideoProcessor.getTargetHeight();
+
+    private static final long SEED = 0x5EEDL;
+
+    private SyntheticFrames() {
+    }
+
+    /**
+     * 生成调色板序号帧序列
+     *
+     * @param count      帧数
+     * @param changeRate 每帧改变的像素比例（0 - 1）
+     */
+    public static List<FrameBuffer> paletteFrames(int count, double changeRate) {
+        Random random = new Random(SEED);
+        int colors = Palette.getAllColors().length;
+        int pixels = WIDTH * HEIGHT;
+        int changes = (int) Math.round(pixels * changeRate);
+
+        List<FrameBuffer> frames = new ArrayList<>(count);
+        FrameBuffer previous = null;
+        for (int i = 0; i < count; i++) {
+            FrameBuffer frame = new FrameBuffer(WIDTH, HEIGHT);
+            frame.setIndex(i);
+            byte[] data = frame.getData();
+            if (previous == null) {
+                for (int p = 0; p < pixels; p++) {
+                    data[p] = (byte) random.nextInt(colors);
+                }
+            } else {
+                System.arraycopy(previous.getData(), 0, data, 0, pixels);
+                for (int c = 0; c < changes; c++) {
+                    int p = random.nextInt(pixels);
+                    data[p] = (byte) ((data[p] + 1 + random.nextInt(colors - 1)) % colors);
+                }
+                frame.computeChanges(previous);
+            }
+            frames.add(frame);
+            previous = frame;
+        }
+        return frames;
+    }
+
+    /**
+     * 生成一帧随机 RGB 像素（按行存储）
+     */
+    public static int[] rgbFrame() {
+        Random random = new Random(SEED);
+        int[] rgb = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < rgb.length; i++) {
+            rgb[i] = random.nextInt(1 << 24);
+        }
+        return rgb;
+    }
+
+    /**
+     * 生成随机颜色的调色板，用于测试大调色板的查找表生成
+     *
+     * @param size 颜色数（1 - 256）
+     */
+    public static Palette[] palette(int size) {
+        Random random = new Random(SEED);
+        Palette[] colors = new Palette[size];
+        for (int i = 0; i < size; i++) {
+            colors[i] = new Palette("COLOR_" + i, Material.WHITE_CONCRETE,
+                random.nextInt(256), random.nextInt(256), random.nextInt(256));
+        }
+        return colors;
+    }
+
+    /**
+     * 生成一张随机 RGB 图片
+     *
+     * @param type BufferedImage 图片类型
+     */
+    public static BufferedImage image(int type) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+        image.setRGB(0, 0, WIDTH, HEIGHT, rgbFrame(), 0, WIDTH);
+        return image;
+    }
+}
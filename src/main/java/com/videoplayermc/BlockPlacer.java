@@ -1,127 +1,231 @@
 package com.videoplayermc;
 
 import org.bukkit.Location;
-import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.block.Block;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * 方块放置器
  * 负责将视频帧数据放置到 Minecraft 世界中
  * 使用增量更新优化性能，仅放置颜色变化的方块
+ * 方块写入由 {@link ChunkBlockWriter} 按区块批量完成，并受每 tick 的时间预算限制
+ * 使用 {@link PacketBlockWriter} 时只向观看者发送假方块更新，不修改世界
  */
-public class BlockPlacer {
+public class BlockPlacer implements FrameSink {
 
-    private final World world;
     private final Location origin;
     private final int width;
     private final int height;
+    private final ChunkBlockWriter writer;
+    private final ViewerTracker viewers;
 
     // 记录上一帧的方块状态，用于增量更新
-    private Palette[][] previousFrame;
+    private FrameBuffer previousFrame;
+    private boolean clearing;
+
+    // 跳帧时逐像素比较的结果，首次使用时分配
+    private int[] diff;
 
     public BlockPlacer(World world, Location origin, int width, int height) {
-        this.world = world;
+        this(origin, width, height, new ChunkBlockWriter(world, origin, width, height), ViewerTracker.forArea(origin, width, height));
+    }
+
+    /**
+     * @param origin  起始位置
+     * @param width   宽度
+     * @param height  高度
+     * @param writer  方块写入器，覆盖的区域需与起始位置和宽高一致
+     * @param viewers 视距内的观看者列表，{@link PacketBlockWriter} 需与放置器使用同一个
+     */
+    public BlockPlacer(Location origin, int width, int height, ChunkBlockWriter writer, ViewerTracker viewers) {
         this.origin = origin.clone();
         this.width = width;
         this.height = height;
+        this.writer = writer;
+        this.viewers = viewers;
     }
 
     /**
      * 放置一帧
-     * 使用增量更新优化，仅放置颜色变化的方块
+     * 使用增量更新优化，仅将颜色变化的方块加入待写入列表，
+     * 实际写入由 {@link #flush(long)} 在每 tick 的时间预算内完成
+     * 放置器持有帧缓冲区的一个引用，放置完成后释放上一帧，
+     * 当前帧直接作为新的上一帧保存（指针交换，无需复制）
+     * 帧可能同时被其他屏幕持有，放置器不修改帧的内容和变化列表
      *
-     * @param frameData 帧数据
+     * @param frame 帧缓冲区，调用方已为放置器增加引用
      */
-    public void placeFrame(Palette[][] frameData) {
-        if (previousFrame == null) {
-            // 第一帧，放置所有方块
-            placeFullFrame(frameData);
+    @Override
+    public void placeFrame(FrameBuffer frame) {
+        if (previousFrame == null || clearing) {
+            // 第一帧或清除途中，放置所有方块
+            clearing = false;
+            writer.markAll();
+        } else if (frame.hasChangesFrom(previousFrame.getIndex())) {
+            // 变化列表基于上一帧，直接按列表放置
+            writer.mark(frame.getChanges(), frame.getChangeCount());
         } else {
-            // 后续帧，仅放置变化的方块
-            placeIncrementalFrame(frameData);
+            // 跳帧后，与上一帧逐像素比较，结果写入放置器自己的数组
+            if (diff == null) {
+                diff = new int[width * height];
+            }
+            writer.mark(diff, frame.diff(previousFrame, diff));
         }
 
-        // 保存当前帧状态
-        previousFrame = copyFrame(frameData);
+        // 保存当前帧状态，尚未写入的像素将使用当前帧的数据
+        if (previousFrame != null) {
+            previousFrame.release();
+        }
+        previousFrame = frame;
     }
 
     /**
-     * 放置完整帧（用于第一帧）
+     * 在时间预算内写入待写入的方块
+     *
+     * @param deadline 截止时间（System.nanoTime）
+     * @return 本次写入的方块数量
      */
-    private void placeFullFrame(Palette[][] frameData) {
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                Palette color = frameData[x][y];
-                Location blockLoc = getBlockLocation(x, y);
-                setBlock(blockLoc, color);
+    @Override
+    public int flush(long deadline) {
+        if (clearing) {
+            int written = writer.flush(null, deadline);
+            if (!writer.hasPending()) {
+                clearing = false;
+                releasePreviousFrame();
             }
+            return written;
+        }
+
+        if (previousFrame == null) {
+            return 0;
         }
+        return writer.flush(previousFrame.getData(), deadline);
     }
 
     /**
-     * 增量更新帧（仅放置颜色变化的方块）
-     * 性能优化：减少约 80% 的方块操作
+     * 更新视距内的观看者
+     * 客户端显示模式下新进入范围的观看者立即收到当前画面
+     *
+     * @param candidates 候选观看者
      */
-    private void placeIncrementalFrame(Palette[][] frameData) {
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                Palette currentColor = frameData[x][y];
-                Palette previousColor = previousFrame[x][y];
-
-                // 仅放置颜色不同的方块
-                if (currentColor != previousColor) {
-                    Location blockLoc = getBlockLocation(x, y);
-                    setBlock(blockLoc, currentColor);
-                }
-            }
+    @Override
+    public void updateViewers(Collection<? extends FrameViewer> candidates) {
+        List<FrameViewer> joined = viewers.update(candidates);
+        if (writer instanceof PacketBlockWriter) {
+            byte[] data = clearing || previousFrame == null ? null : previousFrame.getData();
+            ((PacketBlockWriter) writer).resync(joined, data);
         }
     }
 
     /**
-     * 设置单个方块
+     * 获取视距内的观看者
      */
-    private void setBlock(Location location, Palette color) {
-        Block block = world.getBlockAt(location);
-        block.setType(color.getBlockType(), false); // false = 不触发物理更新
+    @Override
+    public Collection<FrameViewer> getViewers() {
+        return viewers.getViewers();
     }
 
     /**
-     * 获取指定像素位置对应的方块坐标
+     * 获取视距内的观看者数量
      */
-    private Location getBlockLocation(int x, int y) {
-        // x 轴向正方向延伸，y 轴向正方向延伸
-        return origin.clone().add(x, y, 0);
+    @Override
+    public int getViewerCount() {
+        return viewers.getViewerCount();
     }
 
     /**
-     * 复制帧数据
+     * 检查是否还有未写入的方块
      */
-    private Palette[][] copyFrame(Palette[][] frameData) {
-        Palette[][] copy = new Palette[width][height];
-        for (int x = 0; x < width; x++) {
-            System.arraycopy(frameData[x], 0, copy[x], 0, height);
-        }
-        return copy;
+    @Override
+    public boolean hasPendingWrites() {
+        return writer.hasPending();
     }
 
     /**
      * 清除所有方块（设置为空气）
+     * 与放置帧一样在每 tick 的时间预算内分批完成
      */
+    @Override
     public void clear() {
+        clearing = true;
+        writer.markAll();
+    }
+
+    /**
+     * 只清除左下角 keepWidth x keepHeight 以外的方块（设置为空气），屏幕缩小时调用
+     * 保留区域由新的放置器写入，这里尚未写入的方块直接丢弃
+     *
+     * @param keepWidth  保留区域宽度
+     * @param keepHeight 保留区域高度
+     */
+    @Override
+    public void clearOutside(int keepWidth, int keepHeight) {
+        writer.discardPending();
+
+        int[] positions = new int[width * height];
+        int count = 0;
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
-                Location blockLoc = getBlockLocation(x, y);
-                Block block = world.getBlockAt(blockLoc);
-                block.setType(Material.AIR, false);
+                if (x >= keepWidth || y >= keepHeight) {
+                    positions[count++] = x * height + y;
+                }
             }
         }
-        previousFrame = null;
+
+        clearing = true;
+        writer.mark(positions, count);
+    }
+
+    /**
+     * 丢弃未写入的方块并释放上一帧，放置器不再使用时调用
+     */
+    @Override
+    public void discard() {
+        writer.discardPending();
+        clearing = false;
+        releasePreviousFrame();
+    }
+
+    /**
+     * 检查是否正在清除
+     */
+    public boolean isClearing() {
+        return clearing;
+    }
+
+    /**
+     * 归还上一帧
+     */
+    private void releasePreviousFrame() {
+        if (previousFrame != null) {
+            previousFrame.release();
+            previousFrame = null;
+        }
+    }
+
+    @Override
+    public int getPendingCount() {
+        return writer.getPendingCount();
+    }
+
+    @Override
+    public long getTotalWrites() {
+        return writer.getTotalWrites();
+    }
+
+    /**
+     * 获取方块写入器（包含按区块统计的写入次数）
+     */
+    public ChunkBlockWriter getWriter() {
+        return writer;
     }
 
     /**
      * 获取起始位置
      */
+    @Override
     public Location getOrigin() {
         return origin.clone();
     }
@@ -129,6 +233,7 @@ public class BlockPlacer {
     /**
      * 获取宽度
      */
+    @Override
     public int getWidth() {
         return width;
     }
@@ -136,6 +241,7 @@ public class BlockPlacer {
     /**
      * 获取高度
      */
+    @Override
     public int getHeight() {
         return height;
     }
@@ -0,0 +1,312 @@
+package com.videoplayermc;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.util.Arrays;
+
+/**
+ * 按区块批量写入方块
+ * 将需要写入的像素按区块和区块段（16 格高）分组，每个区块只查找一次，
+ * 并使用预先创建的 BlockData 写入，写入过程中不创建 Location 等临时对象
+ * 需要写入的像素先进入待写入列表，按时间预算分批写入
+ * 子类可以重写 {@link #writeBucket} 改变每个区块段的写入方式
+ */
+public class ChunkBlockWriter {
+
+    // 每写入多少个方块检查一次时间预算
+    private static final int CHECK_INTERVAL = 32;
+
+    protected final World world;
+    protected final int originX;
+    protected final int originY;
+    protected final int originZ;
+    protected final int width;
+    protected final int height;
+
+    // 屏幕覆盖的区块范围（屏幕位于固定 z 平面，只会跨越 x 方向的区块）
+    protected final int firstChunkX;
+    protected final int chunkZ;
+    private final int firstSection;
+    private final int sectionCount;
+
+    // 每个像素所属的分组（区块序号 * sectionCount + 区块段序号）
+    private final int[] pixelBucket;
+    protected final int[] bucketStart;
+    private final int[] bucketFill;
+    protected final int[] sorted;
+
+    // 待写入的像素，写入时间超出预算时顺延到下一 tick
+    private final int[] pending;
+    private final boolean[] dirty;
+    private int pendingCount;
+
+    // 每种调色板颜色对应的方块数据
+    private final BlockData[] paletteData;
+    private final BlockData airData;
+
+    // 统计：每个区块的写入次数和区块查找次数
+    private final long[] writesPerChunk;
+    private long chunkLookups;
+    private long totalWrites;
+
+    // 当前分批写入中最近查找的区块
+    private Chunk chunk;
+    private int chunkIndex = -1;
+
+    public ChunkBlockWriter(World world, Location origin, int width, int height) {
+        this.world = world;
+        this.originX = origin.getBlockX();
+        this.originY = origin.getBlockY();
+        this.originZ = origin.getBlockZ();
+        this.width = width;
+        this.height = height;
+
+        this.firstChunkX = originX >> 4;
+        int lastChunkX = (originX + width - 1) >> 4;
+        this.chunkZ = originZ >> 4;
+        this.firstSection = originY >> 4;
+        int lastSection = (originY + height - 1) >> 4;
+        this.sectionCount = lastSection - firstSection + 1;
+
+        int chunkCount = lastChunkX - firstChunkX + 1;
+        int bucketCount = chunkCount * sectionCount;
+
+        this.pixelBucket = new int[width * height];
+        for (int x = 0; x < width; x++) {
+            int chunkIndex = ((originX + x) >> 4) - firstChunkX;
+            for (int y = 0; y < height; y++) {
+                int section = ((originY + y) >> 4) - firstSection;
+                pixelBucket[x * height + y] = chunkIndex * sectionCount + section;
+            }
+        }
+
+        this.bucketStart = new int[bucketCount + 1];
+        this.bucketFill = new int[bucketCount];
+        this.sorted = new int[width * height];
+        this.pending = new int[width * height];
+        this.dirty = new boolean[width * height];
+
+        // 调色板不同的视频在播放前被拒绝，超出调色板的序号只可能来自损坏的数据，显示为空气而不是看似正常的颜色
+        Palette[] colors = Palette.getAllColors();
+        this.airData = Material.AIR.createBlockData();
+        this.paletteData = new BlockData[Palette.MAX_COLORS];
+        for (int i = 0; i < paletteData.length; i++) {
+            paletteData[i] = i < colors.length ? colors[i].getBlockType().createBlockData() : airData;
+        }
+
+        this.writesPerChunk = new long[chunkCount];
+    }
+
+    /**
+     * 标记需要写入的像素
+     * 已在待写入列表中的像素不会重复加入，写入时使用最新的像素数据
+     *
+     * @param positions 像素位置（x * height + y）
+     * @param count     像素数量
+     */
+    public void mark(int[] positions, int count) {
+        for (int i = 0; i < count; i++) {
+            int position = positions[i];
+            if (!dirty[position]) {
+                dirty[position] = true;
+                pending[pendingCount++] = position;
+            }
+        }
+    }
+
+    /**
+     * 标记屏幕上所有像素需要写入
+     */
+    public void markAll() {
+        for (int i = 0; i < dirty.length; i++) {
+            dirty[i] = true;
+            pending[i] = i;
+        }
+        pendingCount = dirty.length;
+    }
+
+    /**
+     * 丢弃所有待写入的像素
+     */
+    public void discardPending() {
+        for (int i = 0; i < pendingCount; i++) {
+            dirty[pending[i]] = false;
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * 在时间预算内写入待写入的像素，未完成的部分保留到下一次调用
+     *
+     * @param data     像素数据（调色板序号），为 null 时写入空气
+     * @param deadline 截止时间（System.nanoTime）
+     * @return 本次写入的方块数量
+     */
+    public int flush(byte[] data, long deadline) {
+        if (pendingCount == 0) {
+            return 0;
+        }
+
+        groupByBucket(pending, pendingCount);
+        int written = apply(data, deadline);
+
+        // 未写入的像素按分组顺序放回待写入列表
+        int remaining = pendingCount - written;
+        System.arraycopy(sorted, written, pending, 0, remaining);
+        pendingCount = remaining;
+        return written;
+    }
+
+    /**
+     * 检查是否还有待写入的像素
+     */
+    public boolean hasPending() {
+        return pendingCount > 0;
+    }
+
+    /**
+     * 获取待写入的像素数量
+     */
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * 使用计数排序将像素按分组排列到 sorted 中，分组边界写入 bucketStart
+     */
+    protected void groupByBucket(int[] positions, int count) {
+        int bucketCount = bucketFill.length;
+        Arrays.fill(bucketStart, 0);
+        for (int i = 0; i < count; i++) {
+            bucketStart[pixelBucket[positions[i]] + 1]++;
+        }
+        for (int b = 0; b < bucketCount; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        System.arraycopy(bucketStart, 0, bucketFill, 0, bucketCount);
+        for (int i = 0; i < count; i++) {
+            int position = positions[i];
+            sorted[bucketFill[pixelBucket[position]]++] = position;
+        }
+    }
+
+    /**
+     * 按分组写入 sorted 中的方块，写入超出时间预算时停止
+     *
+     * @param data     像素数据，为 null 时写入空气
+     * @param deadline 截止时间（System.nanoTime）
+     * @return 写入的方块数量（sorted 的前缀长度）
+     */
+    private int apply(byte[] data, long deadline) {
+        int bucketCount = bucketFill.length;
+        int written = 0;
+
+        try {
+            for (int b = 0; b < bucketCount; b++) {
+                int start = bucketStart[b];
+                int end = bucketStart[b + 1];
+                if (start == end) {
+                    continue;
+                }
+
+                int bucketChunk = b / sectionCount;
+                int count = writeBucket(bucketChunk, start, end, data, deadline, written);
+                for (int i = start; i < start + count; i++) {
+                    dirty[sorted[i]] = false;
+                }
+                written += count;
+                writesPerChunk[bucketChunk] += count;
+                totalWrites += count;
+
+                if (count < end - start) {
+                    break;
+                }
+            }
+        } finally {
+            // 不在 tick 之间持有区块
+            chunk = null;
+            chunkIndex = -1;
+        }
+
+        return written;
+    }
+
+    /**
+     * 写入一个分组（同一区块段）中的方块，每个区块只查找一次
+     * 每写入 CHECK_INTERVAL 个方块检查一次截止时间
+     *
+     * @param bucketChunk 区块序号（从 firstChunkX 开始）
+     * @param start       分组在 sorted 中的起始位置
+     * @param end         分组在 sorted 中的结束位置（不包含）
+     * @param data        像素数据，为 null 时写入空气
+     * @param deadline    截止时间（System.nanoTime）
+     * @param written     本次已写入的方块数量
+     * @return 写入的方块数量（从 start 开始的前缀长度）
+     */
+    protected int writeBucket(int bucketChunk, int start, int end, byte[] data, long deadline, int written) {
+        if (bucketChunk != chunkIndex) {
+            chunkIndex = bucketChunk;
+            chunk = world.getChunkAt(firstChunkX + chunkIndex, chunkZ);
+            chunkLookups++;
+        }
+
+        int localZ = originZ & 15;
+        for (int i = start; i < end; i++) {
+            int total = written + i - start;
+            if (total % CHECK_INTERVAL == 0 && total > 0 && System.nanoTime() >= deadline) {
+                return i - start;
+            }
+
+            int position = sorted[i];
+            int x = position / height;
+            int y = position - x * height;
+            chunk.getBlock((originX + x) & 15, originY + y, localZ).setBlockData(getBlockData(data, position), false); // false = 不触发物理更新
+        }
+        return end - start;
+    }
+
+    /**
+     * 获取像素对应的方块数据
+     *
+     * @param data     像素数据，为 null 时返回空气
+     * @param position 像素位置
+     */
+    protected BlockData getBlockData(byte[] data, int position) {
+        return data != null ? paletteData[data[position] & 0xFF] : airData;
+    }
+
+    /**
+     * 获取每个区块的累计写入次数（按 x 方向区块顺序）
+     */
+    public long[] getWritesPerChunk() {
+        return writesPerChunk.clone();
+    }
+
+    /**
+     * 获取累计区块查找次数
+     */
+    public long getChunkLookups() {
+        return chunkLookups;
+    }
+
+    /**
+     * 获取累计方块写入次数
+     * 逐方块写入时每次写入都需要查找一次区块，两者之比即为批量写入的收益
+     */
+    public long getTotalWrites() {
+        return totalWrites;
+    }
+
+    /**
+     * 重置统计计数
+     */
+    public void resetCounters() {
+        Arrays.fill(writesPerChunk, 0);
+        chunkLookups = 0;
+        totalWrites = 0;
+    }
+}
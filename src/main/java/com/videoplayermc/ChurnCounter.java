@@ -0,0 +1,149 @@
+package com.videoplayermc;
+
+/**
+ * 方块变化统计
+ * 同时记录实际输出、不抖动和未经稳定编码三种量化结果每帧相对上一帧变化的像素数，
+ * 用于比较抖动带来的额外方块写入和稳定编码节省的方块写入
+ */
+public class ChurnCounter {
+
+    private final byte[] previousDithered;
+    private final byte[] previousPlain;
+    private final byte[] previousRaw;
+    private boolean hasPrevious;
+
+    private int frames;
+    private long ditheredTotal;
+    private long plainTotal;
+    private int ditheredMax;
+    private int plainMax;
+    private int lastDithered;
+    private int lastPlain;
+    private long rawTotal;
+
+    public ChurnCounter(int width, int height) {
+        this.previousDithered = new byte[width * height];
+        this.previousPlain = new byte[width * height];
+        this.previousRaw = new byte[width * height];
+    }
+
+    /**
+     * 记录一帧的两种量化结果
+     * 第一帧没有上一帧，不计入统计
+     *
+     * @param dithered 抖动后的帧
+     * @param plain    不抖动的帧
+     */
+    public void record(FrameBuffer dithered, FrameBuffer plain) {
+        record(dithered, plain, dithered);
+    }
+
+    /**
+     * 记录一帧的三种量化结果
+     * 第一帧没有上一帧，不计入统计
+     *
+     * @param dithered 实际输出的帧（抖动、稳定编码后）
+     * @param plain    不抖动的帧
+     * @param raw      未经稳定编码的帧（与实际输出使用相同的抖动）
+     */
+    public void record(FrameBuffer dithered, FrameBuffer plain, FrameBuffer raw) {
+        byte[] ditheredData = dithered.getData();
+        byte[] plainData = plain.getData();
+        byte[] rawData = raw.getData();
+
+        if (hasPrevious) {
+            lastDithered = countChanges(ditheredData, previousDithered);
+            lastPlain = countChanges(plainData, previousPlain);
+            ditheredTotal += lastDithered;
+            plainTotal += lastPlain;
+            rawTotal += raw == dithered ? lastDithered : countChanges(rawData, previousRaw);
+            ditheredMax = Math.max(ditheredMax, lastDithered);
+            plainMax = Math.max(plainMax, lastPlain);
+            frames++;
+        }
+
+        System.arraycopy(ditheredData, 0, previousDithered, 0, ditheredData.length);
+        System.arraycopy(plainData, 0, previousPlain, 0, plainData.length);
+        System.arraycopy(rawData, 0, previousRaw, 0, rawData.length);
+        hasPrevious = true;
+    }
+
+    /**
+     * 合并另一段的统计结果
+     */
+    public void merge(ChurnCounter other) {
+        frames += other.frames;
+        ditheredTotal += other.ditheredTotal;
+        plainTotal += other.plainTotal;
+        rawTotal += other.rawTotal;
+        ditheredMax = Math.max(ditheredMax, other.ditheredMax);
+        plainMax = Math.max(plainMax, other.plainMax);
+    }
+
+    private static int countChanges(byte[] current, byte[] previous) {
+        int count = 0;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] != previous[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 获取已统计的帧数（不含第一帧）
+     */
+    public int getFrames() {
+        return frames;
+    }
+
+    /**
+     * 获取最近一帧抖动结果的变化像素数
+     */
+    public int getLastDithered() {
+        return lastDithered;
+    }
+
+    /**
+     * 获取最近一帧不抖动结果的变化像素数
+     */
+    public int getLastPlain() {
+        return lastPlain;
+    }
+
+    /**
+     * 获取抖动结果平均每帧变化的像素数
+     */
+    public double getAverageDithered() {
+        return frames == 0 ? 0 : (double) ditheredTotal / frames;
+    }
+
+    /**
+     * 获取不抖动结果平均每帧变化的像素数
+     */
+    public double getAveragePlain() {
+        return frames == 0 ? 0 : (double) plainTotal / frames;
+    }
+
+    /**
+     * 获取稳定编码节省的方块写入次数（未经稳定编码与实际输出的变化像素数之差）
+     */
+    public long getSavedWrites() {
+        return rawTotal - ditheredTotal;
+    }
+
+    /**
+     * 获取稳定编码节省的方块写入比例（0 - 1）
+     */
+    public double getSavedRatio() {
+        return rawTotal == 0 ? 0 : (double) getSavedWrites() / rawTotal;
+    }
+
+    public int getMaxDithered() {
+        return ditheredMax;
+    }
+
+    public int getMaxPlain() {
+        return plainMax;
+    }
+}
@@ -0,0 +1,121 @@
+package com.videoplayermc;
+
+/**
+ * 按格子查找最近的调色板颜色
+ * 把 RGB 空间分成 8x8x8 的格子，先按格子在距离公式颜色空间中的范围排除不可能最近的颜色，
+ * 格子中的每个颜色只与剩下的候选颜色比较，只剩一个候选时整个格子直接填充
+ * 结果与逐个比较所有颜色完全相同（距离相同时取序号较小的颜色），调色板增大到 256 种时生成查找表的耗时基本不变
+ * 创建后不再修改，可以被多个线程共享
+ */
+final class ColorCellSearch {
+
+    /**
+     * 格子每边的 RGB 分量数
+     */
+    static final int CELL_SIZE = 8;
+
+    private final ColorMetric metric;
+
+    // 调色板颜色在距离公式颜色空间中的坐标
+    private final double[][] points;
+
+    ColorCellSearch(Palette[] colors, ColorMetric metric) {
+        this.metric = metric;
+        this.points = new double[colors.length][3];
+        for (int i = 0; i < colors.length; i++) {
+            metric.toSpace(colors[i].getR(), colors[i].getG(), colors[i].getB(), points[i]);
+        }
+    }
+
+    /**
+     * 计算一个格子中所有颜色对应的调色板序号，写入完整查找表
+     *
+     * @param r0    格子红色分量的起点（CELL_SIZE 的倍数）
+     * @param g0    格子绿色分量的起点
+     * @param b0    格子蓝色分量的起点
+     * @param table 完整查找表（r << 16 | g << 8 | b）
+     */
+    void fillCell(int r0, int g0, int b0, byte[] table) {
+        int last = CELL_SIZE - 1;
+        double[] lo = new double[3];
+        double[] hi = new double[3];
+        metric.boundsInSpace(r0, g0, b0, r0 + last, g0 + last, b0 + last, lo, hi);
+        // 稍微放大范围，避免舍入误差排除掉实际最近的颜色
+        for (int a = 0; a < 3; a++) {
+            double margin = 1e-9 * (1 + Math.abs(lo[a]) + Math.abs(hi[a]));
+            lo[a] -= margin;
+            hi[a] += margin;
+        }
+
+        // 格子中任意颜色到最近调色板颜色的距离不超过 bound，最近距离大于 bound 的颜色不可能最近
+        double bound = Double.MAX_VALUE;
+        for (double[] point : points) {
+            bound = Math.min(bound, farthest(point, lo, hi));
+        }
+        int[] candidates = new int[points.length];
+        int count = 0;
+        for (int i = 0; i < points.length; i++) {
+            if (nearest(points[i], lo, hi) <= bound) {
+                candidates[count++] = i;
+            }
+        }
+
+        if (count == 1) {
+            byte color = (byte) candidates[0];
+            for (int r = r0; r <= r0 + last; r++) {
+                for (int g = g0; g <= g0 + last; g++) {
+                    int base = (r << 16) | (g << 8) | b0;
+                    for (int b = 0; b <= last; b++) {
+                        table[base + b] = color;
+                    }
+                }
+            }
+            return;
+        }
+
+        double[] query = new double[3];
+        for (int r = r0; r <= r0 + last; r++) {
+            for (int g = g0; g <= g0 + last; g++) {
+                int base = (r << 16) | (g << 8);
+                for (int b = b0; b <= b0 + last; b++) {
+                    metric.toSpace(r, g, b, query);
+                    // 候选按序号排列，距离相同时保留序号较小的颜色
+                    int closest = candidates[0];
+                    double minDistance = metric.distance(query, points[closest]);
+                    for (int c = 1; c < count; c++) {
+                        double distance = metric.distance(query, points[candidates[c]]);
+                        if (distance < minDistance) {
+                            minDistance = distance;
+                            closest = candidates[c];
+                        }
+                    }
+                    table[base | b] = (byte) closest;
+                }
+            }
+        }
+    }
+
+    /**
+     * 计算颜色到范围 [lo, hi] 内最近一点的距离
+     */
+    private double nearest(double[] point, double[] lo, double[] hi) {
+        double distance = 0;
+        for (int a = 0; a < 3; a++) {
+            double d = point[a] < lo[a] ? lo[a] - point[a] : point[a] > hi[a] ? point[a] - hi[a] : 0;
+            distance += metric.getWeight(a) * d * d;
+        }
+        return distance;
+    }
+
+    /**
+     * 计算颜色到范围 [lo, hi] 内最远一点的距离
+     */
+    private double farthest(double[] point, double[] lo, double[] hi) {
+        double distance = 0;
+        for (int a = 0; a < 3; a++) {
+            double d = Math.max(Math.abs(point[a] - lo[a]), Math.abs(hi[a] - point[a]));
+            distance += metric.getWeight(a) * d * d;
+        }
+        return distance;
+    }
+}
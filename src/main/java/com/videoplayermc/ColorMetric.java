@@ -0,0 +1,158 @@
+package com.videoplayermc;
+
+/**
+ * 颜色距离公式
+ * 每种公式先把 RGB 颜色转换到自己的颜色空间，距离为各分量差的加权平方和，
+ * 因此可以用 {@link ColorCellSearch} 按 RGB 格子在颜色空间中的范围排除不可能最近的颜色
+ */
+public enum ColorMetric {
+
+    /**
+     * 加权 RGB 欧氏距离
+     * 人眼对绿色最敏感，对蓝色最不敏感，分量均为整数，距离计算没有舍入误差
+     */
+    WEIGHTED_RGB("weighted-rgb", "weighted-rgb:2,4,3", 2, 4, 3) {
+        @Override
+        void toSpace(int r, int g, int b, double[] out) {
+            out[0] = r;
+            out[1] = g;
+            out[2] = b;
+        }
+
+        @Override
+        void boundsInSpace(int rMin, int gMin, int bMin, int rMax, int gMax, int bMax, double[] lo, double[] hi) {
+            toSpace(rMin, gMin, bMin, lo);
+            toSpace(rMax, gMax, bMax, hi);
+        }
+    },
+
+    /**
+     * CIELAB 颜色空间中的欧氏距离（CIE76，D65 白点）
+     * 距离更接近人眼感受到的差异，调色板中有大量暗色和低饱和度方块时效果更好
+     */
+    CIELAB("cielab", "cielab76:d65", 1, 1, 1) {
+        @Override
+        void toSpace(int r, int g, int b, double[] out) {
+            toF(r, g, b, out);
+            double fx = out[0];
+            double fy = out[1];
+            double fz = out[2];
+            out[0] = 116 * fy - 16;
+            out[1] = 500 * (fx - fy);
+            out[2] = 200 * (fy - fz);
+        }
+
+        @Override
+        void boundsInSpace(int rMin, int gMin, int bMin, int rMax, int gMax, int bMax, double[] lo, double[] hi) {
+            // X、Y、Z 的系数均为正，f 单调递增，因此 fx、fy、fz 的范围由两个角确定
+            double[] min = new double[3];
+            double[] max = new double[3];
+            toF(rMin, gMin, bMin, min);
+            toF(rMax, gMax, bMax, max);
+            lo[0] = 116 * min[1] - 16;
+            hi[0] = 116 * max[1] - 16;
+            lo[1] = 500 * (min[0] - max[1]);
+            hi[1] = 500 * (max[0] - min[1]);
+            lo[2] = 200 * (min[1] - max[2]);
+            hi[2] = 200 * (max[1] - min[2]);
+        }
+
+        /**
+         * 计算 XYZ 各分量经过 f 变换后的值
+         */
+        private void toF(int r, int g, int b, double[] out) {
+            double lr = LINEAR[r];
+            double lg = LINEAR[g];
+            double lb = LINEAR[b];
+            out[0] = labF((0.4124564 * lr + 0.3575761 * lg + 0.1804375 * lb) / 0.95047);
+            out[1] = labF(0.2126729 * lr + 0.7151522 * lg + 0.0721750 * lb);
+            out[2] = labF((0.0193339 * lr + 0.1191920 * lg + 0.9503041 * lb) / 1.08883);
+        }
+    };
+
+    // sRGB 分量到线性亮度的查找表
+    private static final double[] LINEAR = buildLinear();
+
+    private final String configName;
+    private final String id;
+    private final double[] weights;
+
+    ColorMetric(String configName, String id, double... weights) {
+        this.configName = configName;
+        this.id = id;
+        this.weights = weights;
+    }
+
+    /**
+     * 将 RGB 颜色转换到距离公式的颜色空间
+     *
+     * @param out 输出的 3 个分量
+     */
+    abstract void toSpace(int r, int g, int b, double[] out);
+
+    /**
+     * 计算 RGB 长方体 [min, max] 中所有颜色转换后所在的范围（可以偏大，不能偏小）
+     *
+     * @param lo 输出的各分量下界
+     * @param hi 输出的各分量上界
+     */
+    abstract void boundsInSpace(int rMin, int gMin, int bMin, int rMax, int gMax, int bMax, double[] lo, double[] hi);
+
+    /**
+     * 计算两个已转换颜色之间的距离（只用于比较大小，省去开方）
+     */
+    double distance(double[] a, double[] b) {
+        double d0 = a[0] - b[0];
+        double d1 = a[1] - b[1];
+        double d2 = a[2] - b[2];
+        return weights[0] * d0 * d0 + weights[1] * d1 * d1 + weights[2] * d2 * d2;
+    }
+
+    /**
+     * 获取分量的权重
+     */
+    double getWeight(int axis) {
+        return weights[axis];
+    }
+
+    /**
+     * 获取公式标识，修改公式时必须同时修改，使旧的查找表缓存失效
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 获取配置文件中使用的名称
+     */
+    public String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * 按配置文件中的名称查找距离公式
+     *
+     * @throws IllegalArgumentException 名称无效
+     */
+    public static ColorMetric parse(String name) {
+        for (ColorMetric metric : values()) {
+            if (metric.configName.equalsIgnoreCase(name.trim())) {
+                return metric;
+            }
+        }
+        throw new IllegalArgumentException("未知的颜色距离公式: " + name);
+    }
+
+    private static double[] buildLinear() {
+        double[] linear = new double[256];
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            linear[i] = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+        }
+        return linear;
+    }
+
+    private static double labF(double t) {
+        return t > 216.0 / 24389 ? Math.cbrt(t) : (24389.0 / 27 * t + 16) / 116;
+    }
+}
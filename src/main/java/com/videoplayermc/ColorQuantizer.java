@@ -1,44 +1,242 @@
 package com.videoplayermc;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * 颜色量化器
- * 将 RGB 颜色映射到最近的混凝土颜色
+ * 将 RGB 颜色映射到最近的调色板颜色
+ * 查找表按 RGB 格子在多个线程上并行计算，并按调色板和距离公式的哈希缓存到磁盘，
+ * 之后启动（包括插件重载）时直接映射缓存文件
  */
 public class ColorQuantizer {
 
-    // 预计算的颜色查找表，将 RGB 映射到对应的 Palette 索引
-    private static final byte[] colorLookupTable = new byte[256 * 256 * 256];
-    private static boolean initialized = false;
+    // 完整查找表大小（256^3）
+    private static final int TABLE_SIZE = 256 * 256 * 256;
+
+    // 并行计算时每个任务最少处理的红色格子数
+    private static final int MIN_SPLIT = 1;
+
+    /**
+     * 默认的有序抖动强度（阈值偏移的总幅度，RGB 分量单位）
+     */
+    public static final int DEFAULT_DITHER_STRENGTH = 48;
+
+    // 8x8 Bayer 阈值矩阵，按行存储
+    private static final int[] BAYER_8X8 = {
+         0, 32,  8, 40,  2, 34, 10, 42,
+        48, 16, 56, 24, 50, 18, 58, 26,
+        12, 44,  4, 36, 14, 46,  6, 38,
+        60, 28, 52, 20, 62, 30, 54, 22,
+         3, 35, 11, 43,  1, 33,  9, 41,
+        51, 19, 59, 27, 49, 17, 57, 25,
+        15, 47,  7, 39, 13, 45,  5, 37,
+        63, 31, 55, 23, 61, 29, 53, 21
+    };
+
+    // 预计算的颜色查找表，将 RGB 映射到对应的 Palette 索引（来自缓存时为映射的文件）
+    private static ByteBuffer colorLookupTable;
+    private static volatile boolean initialized = false;
+
+    // 可选的低位深查找表，每个分量只取高 lookupBits 位，体积小到可以留在 CPU 缓存中
+    private static byte[] reducedTable;
+    private static int reducedShift;
+    private static int lookupBits = 8;
+
+    // 颜色距离公式
+    private static ColorMetric metric = ColorMetric.WEIGHTED_RGB;
+
+    // 缓存目录，为 null 时不使用磁盘缓存
+    private static File cacheDir;
+    private static boolean loadedFromCache;
+
+    /**
+     * 设置磁盘缓存目录、运行时查找表位深和颜色距离公式，需在 {@link #initialize()} 之前调用
+     *
+     * @param cacheDirectory 缓存目录，为 null 时不使用磁盘缓存
+     * @param bits           每个颜色分量的位数（5 - 8），8 表示使用完整查找表
+     * @param distanceMetric 颜色距离公式
+     */
+    public static synchronized void configure(File cacheDirectory, int bits, ColorMetric distanceMetric) {
+        if (bits < 5 || bits > 8) {
+            throw new IllegalArgumentException("查找表位深必须在 5 到 8 之间: " + bits);
+        }
+        cacheDir = cacheDirectory;
+        lookupBits = bits;
+        metric = distanceMetric;
+    }
 
     /**
      * 初始化颜色查找表
-     * 预计算所有可能的 RGB 值到最近混凝土颜色的映射
+     * 优先映射磁盘缓存，没有缓存时并行预计算所有可能的 RGB 值到最近调色板颜色的映射并写入缓存
      */
     public static synchronized void initialize() {
         if (initialized) {
             return;
         }
 
-        Palette[] colors = Palette.getAllColors();
+        File cacheFile = cacheDir != null ? new File(cacheDir, "lut-" + paletteHash() + ".bin") : null;
+        ByteBuffer table = cacheFile != null ? mapCache(cacheFile) : null;
+        loadedFromCache = table != null;
 
-        // 遍历所有可能的 RGB 组合（256^3 = 16,777,216 种组合）
-        for (int r = 0; r < 256; r++) {
-            for (int g = 0; g < 256; g++) {
-                for (int b = 0; b < 256; b++) {
-                    int index = (r << 16) | (g << 8) | b;
-                    colorLookupTable[index] = (byte) findClosestColorIndex(r, g, b, colors);
-                }
+        if (table == null) {
+            byte[] data = buildTable(Palette.getAllColors(), metric);
+            table = ByteBuffer.wrap(data);
+            if (cacheFile != null) {
+                saveCache(cacheFile, data);
             }
         }
+        colorLookupTable = table;
+
+        if (lookupBits < 8) {
+            reducedTable = buildReducedTable(table, lookupBits);
+            reducedShift = 8 - lookupBits;
+        }
 
         initialized = true;
     }
 
+    /**
+     * 并行计算完整查找表
+     *
+     * @param colors         调色板
+     * @param distanceMetric 颜色距离公式
+     */
+    static byte[] buildTable(Palette[] colors, ColorMetric distanceMetric) {
+        byte[] data = new byte[TABLE_SIZE];
+        ColorCellSearch search = new ColorCellSearch(colors, distanceMetric);
+        ForkJoinPool.commonPool().invoke(new BuildTask(data, search, 0, 256 / ColorCellSearch.CELL_SIZE));
+        return data;
+    }
+
+    /**
+     * 并行计算查找表的任务，按红色分量的格子拆分
+     */
+    private static class BuildTask extends RecursiveAction {
+
+        private final byte[] table;
+        private final ColorCellSearch search;
+        private final int from;
+        private final int to;
+
+        BuildTask(byte[] table, ColorCellSearch search, int from, int to) {
+            this.table = table;
+            this.search = search;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > MIN_SPLIT) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BuildTask(table, search, from, mid), new BuildTask(table, search, mid, to));
+                return;
+            }
+
+            int size = ColorCellSearch.CELL_SIZE;
+            for (int r = from * size; r < to * size; r += size) {
+                for (int g = 0; g < 256; g += size) {
+                    for (int b = 0; b < 256; b += size) {
+                        search.fillCell(r, g, b, table);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 由完整查找表生成低位深查找表，每个格子取其中心颜色的映射
+     */
+    private static byte[] buildReducedTable(ByteBuffer table, int bits) {
+        int levels = 1 << bits;
+        int shift = 8 - bits;
+        int center = shift > 0 ? 1 << (shift - 1) : 0;
+        byte[] reduced = new byte[levels * levels * levels];
+
+        for (int r = 0; r < levels; r++) {
+            for (int g = 0; g < levels; g++) {
+                for (int b = 0; b < levels; b++) {
+                    int rgb = ((r << shift | center) << 16) | ((g << shift | center) << 8) | (b << shift | center);
+                    reduced[(r * levels + g) * levels + b] = table.get(rgb);
+                }
+            }
+        }
+        return reduced;
+    }
+
+    /**
+     * 映射查找表缓存文件，文件不存在或无效时返回 null
+     */
+    private static ByteBuffer mapCache(File cacheFile) {
+        if (!cacheFile.isFile() || cacheFile.length() != TABLE_SIZE) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            // 映射在缓冲区被回收前保持有效，可以直接关闭通道
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, TABLE_SIZE);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 写入查找表缓存，先写临时文件再替换，失败时只放弃缓存
+     */
+    private static void saveCache(File cacheFile, byte[] data) {
+        File tempFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        try {
+            Files.createDirectories(cacheFile.getParentFile().toPath());
+            Files.write(tempFile.toPath(), data);
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * 计算调色板和距离公式的哈希，作为缓存文件名
+     */
+    static String paletteHash() {
+        StringBuilder key = new StringBuilder(metric.getId());
+        for (Palette color : Palette.getAllColors()) {
+            key.append(';').append(color.getR()).append(',').append(color.getG()).append(',').append(color.getB());
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * 使用预计算的查找表量化颜色
      * 性能优化：O(1) 时间复杂度
      */
     public static Palette quantize(int r, int g, int b) {
+        return Palette.getByIndex(quantizeIndex(r, g, b));
+    }
+
+    /**
+     * 量化颜色并返回调色板序号
+     */
+    public static int quantizeIndex(int r, int g, int b) {
         if (!initialized) {
             initialize();
         }
@@ -48,43 +246,139 @@ public class ColorQuantizer {
         g = clamp(g, 0, 255);
         b = clamp(b, 0, 255);
 
-        int index = (r << 16) | (g << 8) | b;
-        return Palette.getByIndex(colorLookupTable[index] & 0xFF);
+        return lookup((r << 16) | (g << 8) | b);
     }
 
     /**
-     * 找到最近的混凝土颜色索引
-     * 使用欧氏距离计算颜色差异
+     * 查找 RGB 颜色对应的调色板序号
+     * 启用低位深查找表时使用低位深查找表
      */
-    private static int findClosestColorIndex(int r, int g, int b, Palette[] colors) {
-        int closestIndex = 0;
-        double minDistance = Double.MAX_VALUE;
+    private static int lookup(int rgb) {
+        byte[] reduced = reducedTable;
+        if (reduced != null) {
+            int shift = reducedShift;
+            int bits = 8 - shift;
+            int r = (rgb >> 16 & 0xFF) >> shift;
+            int g = (rgb >> 8 & 0xFF) >> shift;
+            int b = (rgb & 0xFF) >> shift;
+            return reduced[(r << bits | g) << bits | b] & 0xFF;
+        }
+        return colorLookupTable.get(rgb & 0xFFFFFF) & 0xFF;
+    }
 
-        for (int i = 0; i < colors.length; i++) {
-            Palette color = colors[i];
-            double distance = calculateDistance(r, g, b, color.getR(), color.getG(), color.getB());
+    /**
+     * 批量量化一帧像素
+     * 输入为按行存储的 RGB 数组（与 BufferedImage.getRGB 输出一致），
+     * 输出写入按列存储的帧缓冲区，不分配任何对象
+     *
+     * @param rgb    按行存储的 RGB 像素（y * width + x）
+     * @param width  帧宽度
+     * @param height 帧高度
+     * @param out    输出帧缓冲区
+     */
+    public static void quantizeFrame(int[] rgb, int width, int height, FrameBuffer out) {
+        quantizeFrame(rgb, width, height, false, out);
+    }
 
-            if (distance < minDistance) {
-                minDistance = distance;
-                closestIndex = i;
+    /**
+     * 批量量化一帧像素，可同时垂直翻转
+     * 视频帧第一行是画面顶部，而帧缓冲区 y = 0 对应最下方的方块，
+     * 处理视频时在量化的同时翻转，省去单独的翻转步骤
+     *
+     * @param rgb          按行存储的 RGB 像素（y * width + x）
+     * @param width        帧宽度
+     * @param height       帧高度
+     * @param flipVertical 是否垂直翻转
+     * @param out          输出帧缓冲区
+     */
+    public static void quantizeFrame(int[] rgb, int width, int height, boolean flipVertical, FrameBuffer out) {
+        if (!initialized) {
+            initialize();
+        }
+
+        byte[] data = out.getData();
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int targetY = flipVertical ? height - 1 - y : y;
+            for (int x = 0; x < width; x++) {
+                data[x * height + targetY] = (byte) lookup(rgb[row + x]);
             }
         }
+    }
+
+    /**
+     * 批量量化一帧像素，使用有序抖动（8x8 Bayer 矩阵）减少色带
+     * 阈值按屏幕上的方块位置（x, 翻转后的 y）选取，与画面内容和帧序号无关，
+     * 静止区域每帧得到相同的结果，不会像误差扩散那样让方块逐帧闪烁
+     *
+     * @param rgb          按行存储的 RGB 像素（y * width + x）
+     * @param width        帧宽度
+     * @param height       帧高度
+     * @param flipVertical 是否垂直翻转
+     * @param strength     抖动强度（阈值偏移的总幅度），0 表示不抖动
+     * @param out          输出帧缓冲区
+     */
+    public static void quantizeFrameDithered(int[] rgb, int width, int height, boolean flipVertical, int strength, FrameBuffer out) {
+        if (!initialized) {
+            initialize();
+        }
 
-        return closestIndex;
+        byte[] data = out.getData();
+        int half = strength / 2;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int targetY = flipVertical ? height - 1 - y : y;
+            int bayerRow = (targetY & 7) << 3;
+            for (int x = 0; x < width; x++) {
+                // 阈值偏移范围约为 [-strength / 2, strength / 2)
+                int offset = ((BAYER_8X8[bayerRow | (x & 7)] << 1) + 1) * strength / 128 - half;
+                int color = rgb[row + x];
+                int r = clamp((color >> 16 & 0xFF) + offset, 0, 255);
+                int g = clamp((color >> 8 & 0xFF) + offset, 0, 255);
+                int b = clamp((color & 0xFF) + offset, 0, 255);
+                data[x * height + targetY] = (byte) lookup((r << 16) | (g << 8) | b);
+            }
+        }
     }
 
     /**
-     * 计算两个 RGB 颜色之间的欧氏距离
-     * 考虑人眼对不同颜色的敏感度，给予绿色更高的权重
+     * 直接从紧凑的 24 位像素缓冲区批量量化一帧，不经过 BufferedImage
+     * 缓冲区第 y 行对应帧缓冲区的 y（不翻转），可选有序抖动
+     *
+     * @param pixels         像素缓冲区（每像素 3 字节，从下标 0 开始）
+     * @param stride         每行的字节数
+     * @param width          帧宽度
+     * @param height         帧高度
+     * @param bgr            字节顺序是否为 B、G、R（否则为 R、G、B）
+     * @param ditherStrength 有序抖动强度，0 表示不抖动
+     * @param out            输出帧缓冲区
      */
-    private static double calculateDistance(int r1, int g1, int b1, int r2, int g2, int b2) {
-        double dr = r1 - r2;
-        double dg = g1 - g2;
-        double db = b1 - b2;
+    public static void quantizePacked(ByteBuffer pixels, int stride, int width, int height, boolean bgr, int ditherStrength, FrameBuffer out) {
+        if (!initialized) {
+            initialize();
+        }
 
-        // 人眼对绿色最敏感，对蓝色最不敏感
-        // 使用加权欧氏距离提高颜色映射的准确性
-        return Math.sqrt(2.0 * dr * dr + 4.0 * dg * dg + 3.0 * db * db);
+        byte[] data = out.getData();
+        int first = bgr ? 2 : 0;
+        int last = bgr ? 0 : 2;
+        int half = ditherStrength / 2;
+        for (int y = 0; y < height; y++) {
+            int offset = y * stride;
+            int bayerRow = (y & 7) << 3;
+            for (int x = 0; x < width; x++) {
+                int p = offset + x * 3;
+                int r = pixels.get(p + first) & 0xFF;
+                int g = pixels.get(p + 1) & 0xFF;
+                int b = pixels.get(p + last) & 0xFF;
+                if (ditherStrength > 0) {
+                    int threshold = ((BAYER_8X8[bayerRow | (x & 7)] << 1) + 1) * ditherStrength / 128 - half;
+                    r = clamp(r + threshold, 0, 255);
+                    g = clamp(g + threshold, 0, 255);
+                    b = clamp(b + threshold, 0, 255);
+                }
+                data[x * height + y] = (byte) lookup((r << 16) | (g << 8) | b);
+            }
+        }
     }
 
     /**
@@ -100,4 +394,25 @@ public class ColorQuantizer {
     public static boolean isInitialized() {
         return initialized;
     }
+
+    /**
+     * 检查查找表是否来自磁盘缓存
+     */
+    public static boolean isLoadedFromCache() {
+        return loadedFromCache;
+    }
+
+    /**
+     * 获取颜色距离公式
+     */
+    public static ColorMetric getMetric() {
+        return metric;
+    }
+
+    /**
+     * 获取运行时查找表的位深
+     */
+    public static int getLookupBits() {
+        return lookupBits;
+    }
 }
\ No newline at end of file
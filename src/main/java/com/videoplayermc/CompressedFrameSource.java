@@ -0,0 +1,300 @@
+package com.videoplayermc;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 压缩帧数据文件（v4）的帧来源
+ * 每个关键帧间隔的帧记录是一个单独压缩的数据块，第一帧总是关键帧，因此各数据块可以独立解压和解码
+ * 读取时在后台线程中提前解压后面的数据块，解压后校验 CRC32，数据损坏时报错而不是播放错误的画面
+ */
+public class CompressedFrameSource implements FrameSource {
+
+    // 提前解压的数据块数
+    private static final int READ_AHEAD = 2;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final FrameSerializer.Header header;
+    private final int frameSize;
+    private final int chunkCount;
+
+    // 构造时校验过的数据块索引
+    private final int[] chunkOffsets;
+    private final int[] compressedSizes;
+    private final int[] rawSizes;
+    private final int[] checksums;
+
+    // 正在解压或已解压的数据块，下标为数据块序号
+    private final CompletableFuture<byte[]>[] pending;
+
+    // 当前数据块及其中下一条帧记录的位置
+    private int chunkIndex = -1;
+    private ByteBuffer chunk;
+    private int cursor;
+
+    // 当前解码状态（stateIndex 对应帧的像素），差分帧在此基础上应用变化
+    private final FrameBuffer state;
+    private int stateIndex = -1;
+
+    public CompressedFrameSource(File file) throws IOException {
+        this(file, null);
+    }
+
+    /**
+     * @param file        帧数据文件
+     * @param knownHeader 已读取的文件头（例如来自 {@link VideoCatalog}），为 null 时从文件读取
+     */
+    @SuppressWarnings("unchecked")
+    CompressedFrameSource(File file, FrameSerializer.Header knownHeader) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("帧数据文件过大，无法映射: " + file.getName());
+            }
+
+            this.header = knownHeader != null ? knownHeader
+                : FrameSerializer.readHeader(new DataInputStream(Channels.newInputStream(channel.position(0))));
+            if (header.version != FrameSerializer.VERSION_4) {
+                throw new IOException("不是压缩的帧数据文件: " + file.getName());
+            }
+            this.frameSize = header.width * header.height;
+            this.chunkCount = header.getChunkCount();
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            this.state = new FrameBuffer(header.width, header.height);
+            this.pending = new CompletableFuture[chunkCount];
+            this.chunkOffsets = new int[chunkCount];
+            this.compressedSizes = new int[chunkCount];
+            this.rawSizes = new int[chunkCount];
+            this.checksums = new int[chunkCount];
+
+            if (header.indexOffset < header.headerSize
+                || header.indexOffset + (long) FrameSerializer.CHUNK_ENTRY_SIZE * chunkCount > size) {
+                throw new IOException("数据块索引不完整: " + file.getName());
+            }
+            // 数据块解压后的最大长度：每帧最多为差分帧（类型、变化数量和每个像素 5 字节变长整数加 1 字节颜色），
+            // 避免损坏的索引申请过大的数组
+            long maxRaw = (long) header.keyframeInterval * (1 + 4 + 5L * frameSize);
+            for (int i = 0; i < chunkCount; i++) {
+                int entry = entryOffset(i);
+                long offset = buffer.getLong(entry);
+                int compressed = buffer.getInt(entry + 8);
+                int raw = buffer.getInt(entry + 12);
+                if (offset < header.headerSize || compressed < 0 || offset + compressed > header.indexOffset
+                    || raw < 0 || raw > maxRaw) {
+                    throw new IOException("数据块索引无效: " + file.getName());
+                }
+                chunkOffsets[i] = (int) offset;
+                compressedSizes[i] = compressed;
+                rawSizes[i] = raw;
+                checksums[i] = buffer.getInt(entry + 16);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getFrameCount() {
+        return header.frameCount;
+    }
+
+    @Override
+    public int getWidth() {
+        return header.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return header.height;
+    }
+
+    /**
+     * 读取指定帧
+     * 顺序读取时直接应用差分；跳转时从目标帧所在数据块的第一帧开始解码
+     * 差分帧的变化列表（相对于 index - 1）会写入输出缓冲区
+     */
+    @Override
+    public void readFrame(int index, FrameBuffer out) throws IOException {
+        if (index < 0 || index >= header.frameCount) {
+            throw new IOException("帧索引超出范围: " + index);
+        }
+
+        int target = index / header.keyframeInterval;
+        if (target != chunkIndex || index <= stateIndex || stateIndex < 0) {
+            // 切换数据块或向前跳转时从数据块开头解码
+            if (target != chunkIndex) {
+                chunk = ByteBuffer.wrap(awaitChunk(target));
+                chunkIndex = target;
+            }
+            cursor = 0;
+            stateIndex = target * header.keyframeInterval - 1;
+        }
+
+        boolean key = false;
+        while (stateIndex < index) {
+            key = cursor < chunk.limit() && chunk.get(cursor) == FrameSerializer.FRAME_KEY;
+            int next = stateIndex + 1;
+            stateIndex = -1;
+            cursor = FrameSerializer.decodeRecord(chunk, cursor, next, state, header.bitsPerPixel);
+            stateIndex = next;
+        }
+
+        if (key) {
+            out.clearChanges();
+        } else {
+            int count = state.getChangeCount();
+            System.arraycopy(state.getChanges(), 0, out.prepareChanges(), 0, count);
+            out.setChanges(count, index - 1);
+        }
+        System.arraycopy(state.getData(), 0, out.getData(), 0, frameSize);
+    }
+
+    /**
+     * 并行解压并解码所有帧
+     *
+     * @return 帧数据列表，差分帧带有相对上一帧的变化列表
+     * @throws IOException 如果数据块损坏
+     */
+    public List<FrameBuffer> readAll() throws IOException {
+        FrameBuffer[] frames = new FrameBuffer[header.frameCount];
+        try {
+            IntStream.range(0, chunkCount).parallel().forEach(c -> {
+                try {
+                    ByteBuffer data = ByteBuffer.wrap(inflateChunk(c));
+                    int first = c * header.keyframeInterval;
+                    int last = Math.min(header.frameCount, first + header.keyframeInterval);
+                    int offset = 0;
+                    for (int i = first; i < last; i++) {
+                        FrameBuffer frame = new FrameBuffer(header.width, header.height);
+                        if (i > first) {
+                            System.arraycopy(frames[i - 1].getData(), 0, frame.getData(), 0, frameSize);
+                        }
+                        offset = FrameSerializer.decodeRecord(data, offset, i, frame, header.bitsPerPixel);
+                        frame.setIndex(i);
+                        frames[i] = frame;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new ArrayList<>(Arrays.asList(frames));
+    }
+
+    /**
+     * 获取解压后的数据块，同时提交后面几个数据块的解压任务
+     */
+    private byte[] awaitChunk(int index) throws IOException {
+        // 丢弃不再需要的数据块
+        for (int i = 0; i < chunkCount; i++) {
+            if (pending[i] != null && (i < index || i > index + READ_AHEAD)) {
+                pending[i].cancel(false);
+                pending[i] = null;
+            }
+        }
+        for (int i = index; i <= Math.min(chunkCount - 1, index + READ_AHEAD); i++) {
+            if (pending[i] == null) {
+                int chunkNumber = i;
+                pending[i] = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return inflateChunk(chunkNumber);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        }
+
+        try {
+            return pending[index].get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("读取帧数据时被中断");
+        } catch (ExecutionException e) {
+            pending[index] = null;
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException("解压帧数据失败", cause);
+        }
+    }
+
+    /**
+     * 解压一个数据块并校验 CRC32
+     * 使用构造时校验过的索引，只按绝对位置读取映射缓冲区，可以在多个线程中同时调用
+     */
+    private byte[] inflateChunk(int index) throws IOException {
+        byte[] compressed = new byte[compressedSizes[index]];
+        byte[] data = new byte[rawSizes[index]];
+        int crc = checksums[index];
+        buffer.get(chunkOffsets[index], compressed);
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < data.length && !inflater.finished()) {
+                int n = inflater.inflate(data, length, data.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != data.length || !inflater.finished()) {
+                throw new IOException("帧数据块长度不一致: " + index);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("帧数据块解压失败: " + index, e);
+        } finally {
+            inflater.end();
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(data);
+        if ((int) checksum.getValue() != crc) {
+            throw new IOException("帧数据块校验失败: " + index);
+        }
+        return data;
+    }
+
+    /**
+     * 获取数据块索引项在文件中的位置
+     */
+    private int entryOffset(int index) {
+        return (int) (header.indexOffset + (long) FrameSerializer.CHUNK_ENTRY_SIZE * index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (int i = 0; i < chunkCount; i++) {
+            if (pending[i] != null) {
+                pending[i].cancel(false);
+                pending[i] = null;
+            }
+        }
+        // 映射在缓冲区被回收前保持有效，可以直接关闭通道
+        channel.close();
+    }
+}
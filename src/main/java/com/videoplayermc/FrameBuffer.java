@@ -0,0 +1,189 @@
+package com.videoplayermc;
+
+/**
+ * 帧缓冲区
+ * 使用一维 byte 数组保存调色板序号，按列存储（下标为 x * height + y），
+ * 与帧数据文件中的像素顺序一致
+ * 同时可携带相对于上一帧的变化像素列表，供方块放置器增量更新
+ * 来自缓冲池的缓冲区使用引用计数，多个屏幕共享同一帧时，最后一个持有者释放后才归还缓冲池
+ */
+public final class FrameBuffer {
+
+    private final int width;
+    private final int height;
+    private final byte[] data;
+    private final FrameBufferPool pool;
+
+    // 变化列表，首次使用时分配，随缓冲区一起复用
+    private int[] changes;
+    private int changeCount;
+    private int index = -1;
+    private int baseIndex = -1;
+
+    // 引用计数，只由当前持有帧的线程修改（预取线程交给主线程后只在主线程修改）
+    private int references = 1;
+
+    public FrameBuffer(int width, int height) {
+        this(width, height, null);
+    }
+
+    FrameBuffer(int width, int height, FrameBufferPool pool) {
+        this.width = width;
+        this.height = height;
+        this.data = new byte[width * height];
+        this.pool = pool;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 获取底层像素数组（调色板序号）
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * 获取指定像素的调色板序号
+     */
+    public int get(int x, int y) {
+        return data[x * height + y] & 0xFF;
+    }
+
+    /**
+     * 获取指定像素的颜色
+     */
+    public Palette getColor(int x, int y) {
+        return Palette.getByIndex(get(x, y));
+    }
+
+    /**
+     * 设置指定像素的调色板序号
+     */
+    public void set(int x, int y, int colorIndex) {
+        data[x * height + y] = (byte) colorIndex;
+    }
+
+    /**
+     * 获取帧索引，-1 表示未设置
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    /**
+     * 获取变化列表所基于的帧索引，-1 表示没有变化列表
+     */
+    public int getBaseIndex() {
+        return baseIndex;
+    }
+
+    /**
+     * 获取变化像素位置（x * height + y）
+     */
+    public int[] getChanges() {
+        return changes;
+    }
+
+    public int getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * 计算相对于上一帧的变化列表
+     *
+     * @param previous 上一帧
+     * @return 变化的像素数量
+     */
+    public int computeChanges(FrameBuffer previous) {
+        changeCount = diff(previous, prepareChanges());
+        baseIndex = previous.index;
+        return changeCount;
+    }
+
+    /**
+     * 与另一帧逐像素比较，变化位置写入指定数组，不修改本帧的变化列表
+     *
+     * @param previous 上一帧
+     * @param out      输出数组，长度至少为 width * height
+     * @return 变化的像素数量
+     */
+    public int diff(FrameBuffer previous, int[] out) {
+        byte[] previousData = previous.data;
+        int count = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != previousData[i]) {
+                out[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 获取用于写入变化列表的数组，写入后调用 {@link #setChanges(int, int)}
+     */
+    public int[] prepareChanges() {
+        if (changes == null) {
+            changes = new int[data.length];
+        }
+        return changes;
+    }
+
+    /**
+     * 设置已写入的变化列表
+     *
+     * @param count     变化的像素数量
+     * @param baseIndex 变化列表所基于的帧索引
+     */
+    public void setChanges(int count, int baseIndex) {
+        this.changeCount = count;
+        this.baseIndex = baseIndex;
+    }
+
+    /**
+     * 清除变化列表，放置时将与上一帧逐像素比较或完整绘制
+     */
+    public void clearChanges() {
+        changeCount = 0;
+        baseIndex = -1;
+    }
+
+    /**
+     * 检查变化列表是否可以直接应用在指定帧之上
+     */
+    public boolean hasChangesFrom(int previousIndex) {
+        return baseIndex >= 0 && baseIndex == previousIndex;
+    }
+
+    /**
+     * 增加一个持有者
+     *
+     * @return 当前缓冲区
+     */
+    public FrameBuffer retain() {
+        references++;
+        return this;
+    }
+
+    /**
+     * 释放一个持有者，最后一个持有者释放后将缓冲区归还到所属的缓冲池
+     */
+    public void release() {
+        if (pool != null && --references == 0) {
+            references = 1;
+            index = -1;
+            clearChanges();
+            pool.release(this);
+        }
+    }
+}
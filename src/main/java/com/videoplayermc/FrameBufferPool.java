@@ -0,0 +1,50 @@
+package com.videoplayermc;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 帧缓冲池
+ * 复用固定尺寸的帧缓冲区，稳定播放时不再为每帧分配内存
+ * 预取线程获取缓冲区，主线程归还缓冲区，因此需要线程安全
+ */
+public class FrameBufferPool {
+
+    private final int width;
+    private final int height;
+    private final BlockingQueue<FrameBuffer> free;
+
+    /**
+     * @param width    帧宽度
+     * @param height   帧高度
+     * @param capacity 最多保留的空闲缓冲区数量
+     */
+    public FrameBufferPool(int width, int height, int capacity) {
+        this.width = width;
+        this.height = height;
+        this.free = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    /**
+     * 获取一个缓冲区，池为空时分配新的缓冲区
+     */
+    public FrameBuffer acquire() {
+        FrameBuffer buffer = free.poll();
+        return buffer != null ? buffer : new FrameBuffer(width, height, this);
+    }
+
+    /**
+     * 归还缓冲区，池已满时直接丢弃
+     */
+    void release(FrameBuffer buffer) {
+        free.offer(buffer);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,125 @@
+package com.videoplayermc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 帧图片导入器
+ * 将旧的帧图片目录（processed/<名称>/frame_*.png）转换为帧数据文件（.vmfr）
+ * PNG 解码和量化在多个线程上并行进行，结果按帧顺序写入文件
+ */
+public class FrameImporter {
+
+    // 每个工作线程最多排队的帧数
+    private static final int FRAMES_PER_THREAD = 4;
+
+    private final int threads;
+
+    /**
+     * @param threads 解码帧图片的线程数
+     */
+    public FrameImporter(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * 导入帧图片目录
+     *
+     * @param frameDir         帧图片目录
+     * @param outputFile       输出的帧数据文件
+     * @param progressListener 进度监听器（可选）
+     * @return 写入的帧数量
+     * @throws Exception 如果读取或写入失败
+     */
+    public int importFrames(File frameDir, File outputFile, VideoProcessor.ProgressListener progressListener) throws Exception {
+        List<File> frameFiles = ImageFrameSource.listFrameFiles(frameDir);
+        if (frameFiles.isEmpty()) {
+            throw new IllegalArgumentException("没有找到帧图片文件: " + frameDir.getName());
+        }
+
+        int width = VideoProcessor.getTargetWidth();
+        int height = VideoProcessor.getTargetHeight();
+
+        // 每个线程复用自己的像素读取缓冲区
+        ThreadLocal<int[]> rgb = ThreadLocal.withInitial(() -> new int[width * height]);
+
+        // 先写入临时文件，完成后再替换
+        File tempFile = new File(outputFile.getParentFile(), outputFile.getName() + ".tmp");
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "VideoImport-Thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int frameCount;
+        try (FrameWriter writer = new FrameWriter(tempFile, width, height)) {
+            // 限制已提交但未写入的帧数，避免一次性解码整个目录
+            ArrayDeque<Future<FrameBuffer>> pending = new ArrayDeque<>();
+            int window = threads * FRAMES_PER_THREAD;
+            int next = 0;
+
+            while (next < frameFiles.size() || !pending.isEmpty()) {
+                while (next < frameFiles.size() && pending.size() < window) {
+                    File file = frameFiles.get(next++);
+                    pending.add(executor.submit(() -> readFrame(file, width, height, rgb.get())));
+                }
+
+                writer.writeFrame(await(pending.poll()));
+
+                // 通知进度
+                if (progressListener != null) {
+                    progressListener.onProgress(writer.getFrameCount(), height);
+                }
+            }
+            frameCount = writer.getFrameCount();
+        } catch (Exception e) {
+            tempFile.delete();
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Files.move(tempFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return frameCount;
+    }
+
+    /**
+     * 读取并量化单个帧图片
+     * 帧图片在生成时已经翻转，直接按行量化即可
+     */
+    private static FrameBuffer readFrame(File file, int width, int height, int[] rgb) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("无法读取帧图片: " + file.getName());
+        }
+        if (image.getWidth() != width || image.getHeight() != height) {
+            throw new IOException("帧图片尺寸不匹配: " + file.getName());
+        }
+
+        FrameBuffer frame = new FrameBuffer(width, height);
+        VideoManager.convertImageToPalette(image, rgb, frame);
+        return frame;
+    }
+
+    /**
+     * 等待帧读取完成，并展开读取时的异常
+     */
+    private static FrameBuffer await(Future<FrameBuffer> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.videoplayermc;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR 事件：一帧被放置到屏幕
+ * 持续时间为标记需要写入的方块所用的时间，可以与同一录制中的服务器 tick 事件对照
+ */
+@Name("com.videoplayermc.FramePlaced")
+@Label("Video Frame Placed")
+@Category({"VideoPlayerMC", "Playback"})
+@Description("A video frame was handed to a screen's block placer")
+@StackTrace(false)
+class FramePlacedEvent extends Event {
+
+    @Label("Screen")
+    String screen;
+
+    @Label("Video")
+    String video;
+
+    @Label("Frame Index")
+    int frameIndex;
+
+    @Label("Changed Blocks")
+    @Description("Blocks marked for writing by this frame")
+    int changedBlocks;
+
+    @Label("Pending Blocks")
+    @Description("Blocks waiting to be written after this frame was marked")
+    int pendingBlocks;
+
+    @Label("Buffered Frames")
+    @Description("Decoded frames waiting in the prefetch buffer")
+    int bufferedFrames;
+}
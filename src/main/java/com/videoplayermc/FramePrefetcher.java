@@ -0,0 +1,220 @@
+package com.videoplayermc;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * 帧预取器
+ * 在后台线程中读取、量化后续帧并计算变化的方块，放入有界环形缓冲区
+ * 主线程每 tick 只需取出已就绪的帧并放置方块，不会被磁盘 I/O 或解码阻塞
+ * 帧缓冲区来自缓冲池，放置器放置新帧后归还上一帧，稳定播放时不再分配内存
+ * 同一帧来源的预取器在同一个单线程执行器中依次运行：关闭旧预取器不等待正在读取的帧，
+ * 新预取器排在旧预取器之后，旧预取器退出后才开始使用帧来源，帧来源的解码状态不会被两个线程同时访问
+ */
+public class FramePrefetcher {
+
+    private final FrameSource source;
+    private final Logger logger;
+    private final BlockingQueue<FrameBuffer> buffer;
+    private final FrameBufferPool pool;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final int startIndex;
+    private Future<?> task;
+
+    // 读取帧和计算变化列表的耗时
+    private final LatencyHistogram decodeLatency;
+    private final LatencyHistogram diffLatency;
+
+    private volatile boolean closed;
+    private volatile boolean exhausted;
+
+    /**
+     * @param source     帧来源，同一时间只能被一个预取器使用
+     * @param startIndex 起始帧索引
+     * @param capacity   预取帧数
+     * @param logger     日志记录器
+     */
+    public FramePrefetcher(FrameSource source, int startIndex, int capacity, Logger logger) {
+        this(source, startIndex, capacity, logger, newDecodeExecutor(), true, newPool(source, capacity),
+            new LatencyHistogram(), new LatencyHistogram());
+    }
+
+    /**
+     * @param source        帧来源，只能在 decoder 中读取
+     * @param startIndex    起始帧索引
+     * @param capacity      预取帧数
+     * @param logger        日志记录器
+     * @param decoder       读取帧来源的单线程执行器（见 {@link #newDecodeExecutor}），由调用方关闭
+     * @param pool          帧缓冲池（见 {@link #newPool}），尺寸与帧来源相同，可以在之后的预取器中继续使用
+     * @param decodeLatency 记录读取（解码）每帧的耗时
+     * @param diffLatency   记录自行计算变化列表的耗时
+     */
+    public FramePrefetcher(FrameSource source, int startIndex, int capacity, Logger logger, ExecutorService decoder,
+                           FrameBufferPool pool, LatencyHistogram decodeLatency, LatencyHistogram diffLatency) {
+        this(source, startIndex, capacity, logger, decoder, false, pool, decodeLatency, diffLatency);
+    }
+
+    private FramePrefetcher(FrameSource source, int startIndex, int capacity, Logger logger, ExecutorService decoder,
+                            boolean ownsExecutor, FrameBufferPool pool,
+                            LatencyHistogram decodeLatency, LatencyHistogram diffLatency) {
+        if (pool.getWidth() != source.getWidth() || pool.getHeight() != source.getHeight()) {
+            throw new IllegalArgumentException("帧缓冲池尺寸与帧来源不同");
+        }
+        this.decodeLatency = decodeLatency;
+        this.diffLatency = diffLatency;
+        this.source = source;
+        this.startIndex = startIndex;
+        this.logger = logger;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.pool = pool;
+        this.executor = decoder;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * 创建读取帧来源的单线程执行器
+     * 帧来源的所有预取器和关闭帧来源的任务都应提交到同一个执行器
+     */
+    public static ExecutorService newDecodeExecutor() {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "VideoPrefetch-Thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 创建与帧来源尺寸相同的帧缓冲池
+     *
+     * @param capacity 预取帧数
+     */
+    public static FrameBufferPool newPool(FrameSource source, int capacity) {
+        // 缓冲区中的帧 + 放置器持有的上一帧 + 正在放置的帧 + 正在解码的帧
+        return new FrameBufferPool(source.getWidth(), source.getHeight(), Math.max(1, capacity) + 3);
+    }
+
+    /**
+     * 启动后台预取，排在同一执行器中之前的预取器之后运行
+     */
+    public void start() {
+        task = executor.submit(this::decodeLoop);
+    }
+
+    /**
+     * 后台解码循环
+     * 缓冲区满时阻塞等待，直到主线程取走帧或预取器被关闭
+     */
+    private void decodeLoop() {
+        FrameBuffer previous = null;
+
+        try {
+            int frameCount = source.getFrameCount();
+            for (int i = startIndex; i < frameCount && !closed; i++) {
+                FrameBuffer frame = pool.acquire();
+                try {
+                    long decodeStart = System.nanoTime();
+                    source.readFrame(i, frame);
+                    decodeLatency.record(System.nanoTime() - decodeStart);
+                } catch (IOException e) {
+                    // 跳过损坏的帧，下一帧的变化列表仍基于上一个成功读取的帧
+                    logger.warning("读取帧失败: " + i + " - " + e.getMessage());
+                    frame.release();
+                    continue;
+                }
+
+                frame.setIndex(i);
+                if (previous == null) {
+                    frame.clearChanges();
+                } else if (!frame.hasChangesFrom(previous.getIndex())) {
+                    // 帧来源没有提供变化列表时自行计算
+                    // 上一帧仍在缓冲区或被放置器持有，尚未归还到缓冲池
+                    long diffStart = System.nanoTime();
+                    frame.computeChanges(previous);
+                    diffLatency.record(System.nanoTime() - diffStart);
+                }
+
+                try {
+                    buffer.put(frame);
+                } catch (InterruptedException e) {
+                    // 关闭时没有放入缓冲区的帧直接归还
+                    frame.release();
+                    throw e;
+                }
+                previous = frame;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.severe("帧预取失败: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            exhausted = true;
+            if (closed) {
+                // 关闭后才放入缓冲区的帧由预取线程自己归还
+                drain();
+            }
+        }
+    }
+
+    /**
+     * 取出下一个已就绪的帧（不阻塞）
+     *
+     * @return 已就绪的帧，没有可用帧时返回 null
+     */
+    public FrameBuffer poll() {
+        return buffer.poll();
+    }
+
+    /**
+     * 查看下一个已就绪的帧但不取出（不阻塞）
+     *
+     * @return 已就绪的帧，没有可用帧时返回 null
+     */
+    public FrameBuffer peek() {
+        return buffer.peek();
+    }
+
+    /**
+     * 检查是否所有帧都已被取出
+     */
+    public boolean isFinished() {
+        return exhausted && buffer.isEmpty();
+    }
+
+    /**
+     * 获取当前缓冲的帧数
+     */
+    public int getBufferedFrames() {
+        return buffer.size();
+    }
+
+    /**
+     * 停止预取，不等待正在读取的帧
+     * 预取线程读完当前帧后退出，之后同一执行器中的下一个任务才会使用帧来源
+     * 缓冲区中尚未取出的帧归还到缓冲池，之后的预取器使用同一个缓冲池时不再分配新的帧
+     */
+    public void close() {
+        closed = true;
+        if (task != null) {
+            // 中断等待缓冲区空位的预取线程；尚未开始的任务不再运行
+            task.cancel(true);
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+        drain();
+    }
+
+    private void drain() {
+        FrameBuffer frame;
+        while ((frame = buffer.poll()) != null) {
+            frame.release();
+        }
+    }
+}
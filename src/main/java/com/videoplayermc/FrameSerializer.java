@@ -1,15 +1,72 @@
 package com.videoplayermc;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * 帧数据序列化工具
  * 用于将处理后的帧数据保存到文件和从文件加载
+ *
+ * v1 格式：每帧保存完整的 width * height 字节
+ * v2 格式：定期保存关键帧，其余帧只保存相对上一帧变化的像素（位置差值 + 新颜色）
+ * v3 格式：与 v2 相同的帧记录，文件头中记录帧偏移索引的位置，支持随机访问
+ * v4 格式：每个关键帧间隔的帧记录组成一个数据块，单独压缩并带有 CRC32 校验，文件末尾为数据块索引；
+ * 调色板不超过 16 种颜色时关键帧每像素 4 位，文件头记录处理时的调色板标识，见 {@link CompressedFrameSource}
  */
 public class FrameSerializer {
 
-    private static final int MAGIC_NUMBER = 0x564D4652; // "VMFR" - VideoMC Frame
-    private static final int VERSION = 1;
+    static final int MAGIC_NUMBER = 0x564D4652; // "VMFR" - VideoMC Frame
+    static final int VERSION_1 = 1;
+    static final int VERSION_2 = 2;
+    static final int VERSION_3 = 3;
+    static final int VERSION_4 = 4;
+
+    // 各版本文件头长度（字节）
+    static final int HEADER_SIZE_V1 = 20;
+    static final int HEADER_SIZE_V2 = 24;
+    static final int HEADER_SIZE_V3 = 32;
+    static final int HEADER_SIZE_V4 = 44;
+
+    // 文件头中帧数字段和 v3 / v4 索引位置字段的偏移
+    static final int FRAME_COUNT_POSITION = 8;
+    static final int INDEX_OFFSET_POSITION = 24;
+
+    // v3 帧索引中标记关键帧的最高位
+    static final long KEYFRAME_FLAG = 1L << 63;
+
+    // v4 数据块索引每项的长度：偏移（8 字节）、压缩后长度、原始长度、CRC32（各 4 字节）
+    static final int CHUNK_ENTRY_SIZE = 20;
+
+    // v2 帧类型
+    static final int FRAME_KEY = 0;
+    static final int FRAME_DELTA = 1;
+
+    // 默认关键帧间隔（帧），20fps 下约 5 秒
+    static final int DEFAULT_KEYFRAME_INTERVAL = 100;
+
+    /**
+     * 帧数据文件头
+     */
+    static final class Header {
+        int version;
+        int frameCount;
+        int width;
+        int height;
+        int keyframeInterval;
+        int headerSize;
+        long indexOffset;
+        int bitsPerPixel = 8;
+
+        // 处理时的调色板标识，见 Palette#getHash()
+        long paletteHash;
+
+        /**
+         * 获取 v4 文件的数据块数（每个关键帧间隔一块）
+         */
+        int getChunkCount() {
+            return (int) ((frameCount + (long) keyframeInterval - 1) / keyframeInterval);
+        }
+    }
 
     /**
      * 保存帧数据到文件
@@ -18,98 +75,423 @@ public class FrameSerializer {
      * @param outputFile 输出文件
      * @throws IOException 如果写入失败
      */
-    public static void saveFrames(java.util.List<Palette[][]> frames, File outputFile) throws IOException {
-        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)))) {
-            // 写入文件头
-            dos.writeInt(MAGIC_NUMBER);
-            dos.writeInt(VERSION);
+    public static void saveFrames(java.util.List<FrameBuffer> frames, File outputFile) throws IOException {
+        saveFrames(frames, outputFile, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * 保存帧数据到文件（v4 格式，按关键帧间隔分块压缩）
+     *
+     * @param frames 帧数据列表
+     * @param outputFile 输出文件
+     * @param keyframeInterval 关键帧间隔（帧）
+     * @throws IOException 如果写入失败
+     */
+    public static void saveFrames(java.util.List<FrameBuffer> frames, File outputFile, int keyframeInterval) throws IOException {
+        int width = frames.isEmpty() ? VideoProcessor.getTargetWidth() : frames.get(0).getWidth();
+        int height = frames.isEmpty() ? VideoProcessor.getTargetHeight() : frames.get(0).getHeight();
+
+        try (FrameWriter writer = new FrameWriter(outputFile, width, height, keyframeInterval)) {
+            for (FrameBuffer frame : frames) {
+                writer.writeFrame(frame);
+            }
+        }
+    }
+
+    /**
+     * 写入一帧记录
+     * 差分数据不比完整帧小时自动改为关键帧
+     *
+     * @param current  当前帧像素
+     * @param previous 上一帧像素，forceKey 为 true 时可以为 null
+     * @param forceKey 是否强制写入关键帧
+     * @param scratch  变化位置缓冲区，长度不小于帧像素数
+     * @return 是否写入了关键帧
+     */
+    static boolean writeFrameRecord(DataOutputStream dos, byte[] current, byte[] previous,
+                                    boolean forceKey, int[] scratch) throws IOException {
+        return writeFrameRecord(dos, current, previous, forceKey, scratch, 8);
+    }
+
+    /**
+     * 写入一帧记录，关键帧按指定位数存储每个像素
+     *
+     * @param bitsPerPixel 关键帧每像素的位数（4 或 8），4 位时两个像素一个字节，低 4 位在前
+     * @see #writeFrameRecord(DataOutputStream, byte[], byte[], boolean, int[])
+     */
+    static boolean writeFrameRecord(DataOutputStream dos, byte[] current, byte[] previous,
+                                    boolean forceKey, int[] scratch, int bitsPerPixel) throws IOException {
+        int count = 0;
+        if (!forceKey) {
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] != previous[i]) {
+                    scratch[count++] = i;
+                }
+            }
+        }
 
-            // 写入帧数
-            dos.writeInt(frames.size());
+        // 每个变化像素至少需要 2 字节（位置差值 + 颜色）
+        if (forceKey || count * 2 >= keyframeSize(current.length, bitsPerPixel)) {
+            dos.writeByte(FRAME_KEY);
+            if (bitsPerPixel == 4) {
+                writePacked(dos, current);
+            } else {
+                dos.write(current);
+            }
+            return true;
+        }
 
-            // 写入宽度
-            dos.writeInt(VideoProcessor.getTargetWidth());
+        dos.writeByte(FRAME_DELTA);
+        dos.writeInt(count);
+        int last = -1;
+        for (int i = 0; i < count; i++) {
+            int position = scratch[i];
+            writeVarInt(dos, position - last - 1);
+            dos.writeByte(current[position]);
+            last = position;
+        }
+        return false;
+    }
 
-            // 写入高度
-            dos.writeInt(VideoProcessor.getTargetHeight());
+    /**
+     * 获取关键帧像素数据的字节数
+     */
+    static int keyframeSize(int pixels, int bitsPerPixel) {
+        return bitsPerPixel == 4 ? (pixels + 1) / 2 : pixels;
+    }
 
-            // 写入每一帧
-            for (Palette[][] frame : frames) {
-                saveFrame(dos, frame);
+    /**
+     * 每两个像素写入一个字节（低 4 位为前一个像素）
+     */
+    private static void writePacked(DataOutputStream dos, byte[] data) throws IOException {
+        for (int i = 0; i < data.length; i += 2) {
+            int low = data[i];
+            int high = i + 1 < data.length ? data[i + 1] : 0;
+            if (((low | high) & 0xF0) != 0) {
+                throw new IOException("颜色序号超出 4 位: " + Math.max(low & 0xFF, high & 0xFF));
             }
+            dos.writeByte(low | high << 4);
         }
     }
 
     /**
-     * 保存单帧数据
+     * 从缓冲区中解码一帧记录（v2 - v4 格式）
+     * 关键帧覆盖整个帧缓冲区；差分帧在帧缓冲区现有内容（上一帧）上应用变化，并记录变化列表
+     *
+     * @param buffer       文件内容或解压后的数据块
+     * @param offset       记录在缓冲区中的位置
+     * @param index        帧索引
+     * @param frame        帧缓冲区，读取差分帧时需包含上一帧的像素
+     * @param bitsPerPixel 关键帧每像素的位数
+     * @return 下一条记录的位置
      */
-    private static void saveFrame(DataOutputStream dos, Palette[][] frame) throws IOException {
-        int width = frame.length;
-        int height = frame[0].length;
+    static int decodeRecord(ByteBuffer buffer, int offset, int index, FrameBuffer frame, int bitsPerPixel) throws IOException {
+        byte[] data = frame.getData();
+        ByteBuffer in = recordBuffer(buffer, offset, 1);
+        int type = in.get() & 0xFF;
+        if (type == FRAME_KEY) {
+            requireRemaining(in, keyframeSize(data.length, bitsPerPixel));
+            if (bitsPerPixel == 4) {
+                for (int i = 0; i < data.length; i += 2) {
+                    int packed = in.get();
+                    data[i] = (byte) (packed & 0x0F);
+                    if (i + 1 < data.length) {
+                        data[i + 1] = (byte) (packed >> 4 & 0x0F);
+                    }
+                }
+            } else {
+                in.get(data);
+            }
+            frame.clearChanges();
+            return in.position();
+        }
+        if (type != FRAME_DELTA) {
+            throw new IOException("未知的帧类型: " + type);
+        }
 
-        // 写入宽度和高度
-        dos.writeInt(width);
-        dos.writeInt(height);
+        requireRemaining(in, 4);
+        int count = in.getInt();
+        if (count < 0 || count > data.length) {
+            throw new IOException("差分帧变化数量无效: " + count);
+        }
 
-        // 写入每个像素的颜色索引
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                dos.writeByte(frame[x][y].ordinal());
+        int[] changes = frame.prepareChanges();
+        int position = -1;
+        for (int i = 0; i < count; i++) {
+            position += readVarInt(in) + 1;
+            if (position < 0 || position >= data.length) {
+                throw new IOException("差分帧像素位置越界: " + position);
             }
+            requireRemaining(in, 1);
+            data[position] = in.get();
+            changes[i] = position;
         }
+        frame.setChanges(count, index - 1);
+        return in.position();
+    }
+
+    /**
+     * 获取从指定位置开始读取帧记录的缓冲区，共享内容但位置独立，不影响其他线程对原缓冲区的读取
+     *
+     * @param length 至少需要的字节数
+     * @throws IOException 如果记录超出缓冲区
+     */
+    static ByteBuffer recordBuffer(ByteBuffer buffer, int offset, int length) throws IOException {
+        if (offset < 0 || offset > buffer.limit() - length) {
+            throw new IOException("帧记录不完整: " + offset);
+        }
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset);
+        return in;
+    }
+
+    /**
+     * 检查缓冲区剩余的字节数，帧记录被截断时报错
+     */
+    static void requireRemaining(ByteBuffer in, int length) throws IOException {
+        if (in.remaining() < length) {
+            throw new IOException("帧记录不完整: " + in.position());
+        }
+    }
+
+    /**
+     * 打开帧数据文件，v4 文件使用 {@link CompressedFrameSource}，其他版本使用 {@link MappedFrameSource}
+     *
+     * @param file 帧数据文件
+     * @throws IOException 如果文件无效或读取失败
+     */
+    public static FrameSource openFrameSource(File file) throws IOException {
+        Header header;
+        try (DataInputStream dis = new DataInputStream(new FileInputStream(file))) {
+            header = readHeader(dis);
+        }
+        return openFrameSource(file, header);
+    }
+
+    /**
+     * 使用已读取的文件头打开帧数据文件
+     *
+     * @param file   帧数据文件
+     * @param header 文件头，需与文件一致（例如来自 {@link VideoCatalog}）
+     * @throws IOException 如果文件无效或读取失败
+     */
+    static FrameSource openFrameSource(File file, Header header) throws IOException {
+        return header.version == VERSION_4 ? new CompressedFrameSource(file, header) : new MappedFrameSource(file, header);
     }
 
     /**
      * 从文件加载帧数据
+     * 支持 v1 - v4 格式，差分帧会同时带有相对上一帧的变化列表
+     * v4 文件的各数据块并行解压和解码
      *
      * @param inputFile 输入文件
      * @return 帧数据列表
      * @throws IOException 如果读取失败
      */
-    public static java.util.List<Palette[][]> loadFrames(File inputFile) throws IOException {
+    public static java.util.List<FrameBuffer> loadFrames(File inputFile) throws IOException {
+        if (isVersion4(inputFile)) {
+            try (CompressedFrameSource source = new CompressedFrameSource(inputFile)) {
+                return source.readAll();
+            }
+        }
+
         try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(inputFile)))) {
             // 读取并验证文件头
-            int magic = dis.readInt();
-            if (magic != MAGIC_NUMBER) {
-                throw new IOException("无效的帧数据文件格式");
-            }
+            Header header = readHeader(dis);
+            int frameCount = header.frameCount;
+            int width = header.width;
+            int height = header.height;
 
-            int version = dis.readInt();
-            if (version != VERSION) {
-                throw new IOException("不支持的帧数据版本: " + version);
+            // 读取每一帧
+            java.util.List<FrameBuffer> frames = new java.util.ArrayList<>(frameCount);
+            FrameBuffer previous = null;
+            for (int i = 0; i < frameCount; i++) {
+                FrameBuffer frame = new FrameBuffer(width, height);
+                if (header.version == VERSION_1) {
+                    loadFrame(dis, frame);
+                } else {
+                    if (previous != null) {
+                        System.arraycopy(previous.getData(), 0, frame.getData(), 0, frame.getData().length);
+                    }
+                    readFrameRecord(dis, i, frame);
+                }
+                frame.setIndex(i);
+                frames.add(frame);
+                previous = frame;
             }
 
-            // 读取帧数
-            int frameCount = dis.readInt();
+            return frames;
+        }
+    }
 
-            // 读取宽度和高度
-            int width = dis.readInt();
-            int height = dis.readInt();
+    /**
+     * 检查文件是否为 v4 格式
+     */
+    private static boolean isVersion4(File file) throws IOException {
+        try (DataInputStream dis = new DataInputStream(new FileInputStream(file))) {
+            return readHeader(dis).version == VERSION_4;
+        }
+    }
 
-            // 读取每一帧
-            java.util.List<Palette[][]> frames = new java.util.ArrayList<>(frameCount);
-            for (int i = 0; i < frameCount; i++) {
-                frames.add(loadFrame(dis, width, height));
+    /**
+     * 读取并验证文件头
+     */
+    static Header readHeader(DataInputStream dis) throws IOException {
+        int magic = dis.readInt();
+        if (magic != MAGIC_NUMBER) {
+            throw new IOException("无效的帧数据文件格式");
+        }
+
+        Header header = new Header();
+        header.version = dis.readInt();
+        if (header.version < VERSION_1 || header.version > VERSION_4) {
+            throw new IOException("不支持的帧数据版本: " + header.version);
+        }
+
+        // 读取帧数
+        header.frameCount = dis.readInt();
+
+        // 读取宽度和高度
+        header.width = dis.readInt();
+        header.height = dis.readInt();
+        if (header.width < 1 || header.height < 1
+            || header.width > Resolution.MAX_SIZE || header.height > Resolution.MAX_SIZE) {
+            throw new IOException("帧尺寸无效: " + header.width + "x" + header.height);
+        }
+        if (header.frameCount < 0) {
+            throw new IOException("帧数无效: " + header.frameCount);
+        }
+
+        // v1 每帧都是完整帧
+        header.keyframeInterval = header.version == VERSION_1 ? 1 : dis.readInt();
+
+        if (header.keyframeInterval < 1) {
+            throw new IOException("关键帧间隔无效: " + header.keyframeInterval);
+        }
+
+        // v3 记录帧偏移索引的位置，v4 记录数据块索引的位置
+        header.indexOffset = header.version >= VERSION_3 ? dis.readLong() : 0;
+        if (header.version >= VERSION_4) {
+            header.bitsPerPixel = dis.readInt();
+            if (header.bitsPerPixel != 4 && header.bitsPerPixel != 8) {
+                throw new IOException("每像素位数无效: " + header.bitsPerPixel);
             }
+            header.paletteHash = dis.readLong();
+        } else {
+            // 旧版本在调色板可以配置之前处理，使用默认的 16 种混凝土
+            header.paletteHash = Palette.getDefaultHash();
+        }
+        header.headerSize = header.version == VERSION_1 ? HEADER_SIZE_V1
+            : header.version == VERSION_2 ? HEADER_SIZE_V2
+            : header.version == VERSION_3 ? HEADER_SIZE_V3 : HEADER_SIZE_V4;
+        return header;
+    }
 
-            return frames;
+    /**
+     * 加载单帧数据到帧缓冲区（v1 格式）
+     */
+    static void loadFrame(DataInputStream dis, FrameBuffer frame) throws IOException {
+        // 每帧前写有宽度和高度，需要与文件头一致
+        int width = dis.readInt();
+        int height = dis.readInt();
+        if (width != frame.getWidth() || height != frame.getHeight()) {
+            throw new IOException("帧尺寸与文件头不一致: " + width + "x" + height);
         }
+
+        dis.readFully(frame.getData());
     }
 
     /**
-     * 加载单帧数据
+     * 读取一帧记录（v2 / v3 格式）
+     * 关键帧覆盖整个缓冲区；差分帧在缓冲区现有内容（上一帧）上应用变化，
+     * 并将变化位置记录为相对于上一帧的变化列表
+     *
+     * @param index 帧索引
+     * @param frame 帧缓冲区，读取差分帧时需包含上一帧的像素
+     * @return 是否为关键帧
      */
-    private static Palette[][] loadFrame(DataInputStream dis, int width, int height) throws IOException {
-        Palette[][] frame = new Palette[width][height];
+    static boolean readFrameRecord(DataInputStream dis, int index, FrameBuffer frame) throws IOException {
+        int type = dis.readUnsignedByte();
+        byte[] data = frame.getData();
+
+        if (type == FRAME_KEY) {
+            dis.readFully(data);
+            frame.clearChanges();
+            return true;
+        }
+        if (type != FRAME_DELTA) {
+            throw new IOException("未知的帧类型: " + type);
+        }
+
+        int count = dis.readInt();
+        if (count < 0 || count > data.length) {
+            throw new IOException("差分帧变化数量无效: " + count);
+        }
 
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                int colorIndex = dis.readByte() & 0xFF;
-                frame[x][y] = Palette.getByIndex(colorIndex);
+        int[] changes = frame.prepareChanges();
+        int position = -1;
+        for (int i = 0; i < count; i++) {
+            position += readVarInt(dis) + 1;
+            if (position < 0 || position >= data.length) {
+                throw new IOException("差分帧像素位置越界: " + position);
             }
+            data[position] = dis.readByte();
+            changes[i] = position;
         }
+        frame.setChanges(count, index - 1);
+        return false;
+    }
+
+    /**
+     * 写入无符号变长整数（每字节 7 位）
+     */
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * 读取无符号变长整数
+     */
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 28) {
+                throw new IOException("变长整数过长");
+            }
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
 
-        return frame;
+    /**
+     * 从缓冲区的当前位置读取无符号变长整数，与 {@link #readVarInt(DataInput)} 规则相同
+     *
+     * @throws IOException 如果变长整数超过 5 字节或被截断
+     */
+    static int readVarInt(ByteBuffer in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 28) {
+                throw new IOException("变长整数过长");
+            }
+            if (!in.hasRemaining()) {
+                throw new IOException("帧记录不完整: " + in.position());
+            }
+            b = in.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
     }
 
     /**
@@ -127,4 +509,4 @@ public class FrameSerializer {
             return false;
         }
     }
-}
\ No newline at end of file
+}
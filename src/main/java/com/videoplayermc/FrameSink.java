@@ -0,0 +1,95 @@
+package com.videoplayermc;
+
+import org.bukkit.Location;
+
+import java.util.Collection;
+
+/**
+ * 帧输出
+ * 屏幕把到期的帧交给帧输出显示，由 tick 任务在每 tick 的时间预算内调用 {@link #flush(long)}
+ * 实现：{@link BlockPlacer}（方块，写入世界或发送假方块更新）、{@link MapFrameSink}（展示框中的地图）
+ * 只在主线程中调用
+ */
+public interface FrameSink {
+
+    /**
+     * 放置一帧
+     * 输出持有帧缓冲区的一个引用，放置下一帧或丢弃时释放，不修改帧的内容和变化列表
+     *
+     * @param frame 帧缓冲区，调用方已为输出增加引用
+     */
+    void placeFrame(FrameBuffer frame);
+
+    /**
+     * 在时间预算内输出尚未输出的内容
+     *
+     * @param deadline 截止时间（System.nanoTime）
+     * @return 本次输出的像素数量
+     */
+    int flush(long deadline);
+
+    /**
+     * 检查是否还有未输出的内容
+     */
+    boolean hasPendingWrites();
+
+    /**
+     * 获取等待输出的像素数量
+     */
+    int getPendingCount();
+
+    /**
+     * 清除画面，与放置帧一样可能分批完成
+     */
+    void clear();
+
+    /**
+     * 只清除左下角 keepWidth x keepHeight 以外的画面，屏幕缩小时调用
+     *
+     * @param keepWidth  保留区域宽度
+     * @param keepHeight 保留区域高度
+     */
+    void clearOutside(int keepWidth, int keepHeight);
+
+    /**
+     * 丢弃未输出的内容并释放持有的帧，输出不再使用时调用
+     */
+    void discard();
+
+    /**
+     * 更新视距内的观看者
+     *
+     * @param candidates 候选观看者
+     */
+    void updateViewers(Collection<? extends FrameViewer> candidates);
+
+    /**
+     * 获取视距内的观看者
+     */
+    Collection<FrameViewer> getViewers();
+
+    /**
+     * 获取视距内的观看者数量
+     */
+    int getViewerCount();
+
+    /**
+     * 获取累计输出的像素数量
+     */
+    long getTotalWrites();
+
+    /**
+     * 获取起始位置
+     */
+    Location getOrigin();
+
+    /**
+     * 获取宽度（像素）
+     */
+    int getWidth();
+
+    /**
+     * 获取高度（像素）
+     */
+    int getHeight();
+}
@@ -0,0 +1,39 @@
+package com.videoplayermc;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 帧数据来源
+ * 按帧索引提供量化后的帧数据，实现需要允许在后台线程中调用
+ */
+public interface FrameSource extends Closeable {
+
+    /**
+     * 获取总帧数
+     */
+    int getFrameCount();
+
+    /**
+     * 获取帧宽度
+     */
+    int getWidth();
+
+    /**
+     * 获取帧高度
+     */
+    int getHeight();
+
+    /**
+     * 读取并量化指定帧
+     *
+     * @param index 帧索引
+     * @param out   输出帧缓冲区，尺寸与帧来源一致
+     * @throws IOException 如果读取失败
+     */
+    void readFrame(int index, FrameBuffer out) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,49 @@
+package com.videoplayermc;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 画面观看者
+ * 客户端显示模式下接收假方块更新的一方，通常是一个在线玩家（{@link PlayerFrameViewer}）
+ * 只在主线程中调用
+ */
+public interface FrameViewer {
+
+    /**
+     * 获取观看者的唯一标识
+     */
+    UUID getId();
+
+    /**
+     * 检查观看者是否仍然在线
+     */
+    boolean isOnline();
+
+    /**
+     * 获取观看者所在的世界
+     */
+    World getWorld();
+
+    /**
+     * 获取观看者的位置
+     */
+    Location getLocation();
+
+    /**
+     * 获取观看者的视距（区块）
+     */
+    int getViewDistance();
+
+    /**
+     * 发送一批假方块更新，不修改世界
+     * 每次调用的方块都位于同一个区块段中，对应一个多方块更新数据包
+     *
+     * @param changes 方块位置和方块数据
+     */
+    void sendBlockChanges(Map<Location, BlockData> changes);
+}
@@ -0,0 +1,223 @@
+package com.videoplayermc;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 流式帧数据写入器
+ * 逐帧追加量化后的帧到帧数据文件，不需要把整个视频保留在内存中
+ * 默认写入压缩的 v4 格式：每个关键帧间隔的帧记录缓存为一个数据块，写满后压缩写入；
+ * 也可以写入不压缩的 v3 格式（并行处理的中间文件需要快速合并）
+ * 帧数和索引位置在关闭时回填到文件头
+ */
+public class FrameWriter implements Closeable {
+
+    private final File file;
+    private final int width;
+    private final int height;
+    private final int keyframeInterval;
+    private final boolean compressed;
+    private final int bitsPerPixel;
+    private final DataOutputStream dos;
+
+    // v4 当前数据块的帧记录，写满一个关键帧间隔后压缩写入文件
+    private final ByteArrayOutputStream chunkBytes;
+    private final DataOutputStream chunk;
+    private final Deflater deflater;
+    private byte[] deflateBuffer = new byte[0];
+
+    // 上一帧像素的副本，调用方可以在写入后复用自己的缓冲区
+    private final byte[] previous;
+    private final int[] scratch;
+
+    // v3 为帧偏移索引（最高位标记关键帧），v4 为数据块索引（每块 4 项：偏移、压缩后长度、原始长度、CRC32）
+    private long[] index = new long[1024];
+    private int indexLength;
+    private int frameCount;
+    private long offset;
+    private int keyframeCount;
+    private boolean closed;
+
+    /**
+     * @param file             输出文件
+     * @param width            帧宽度
+     * @param height           帧高度
+     * @param keyframeInterval 关键帧间隔（帧）
+     * @param compressed       是否写入压缩的 v4 格式，否则写入 v3 格式
+     * @throws IOException 如果无法创建文件
+     */
+    public FrameWriter(File file, int width, int height, int keyframeInterval, boolean compressed) throws IOException {
+        this.file = file;
+        this.width = width;
+        this.height = height;
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        this.compressed = compressed;
+        // 调色板不超过 16 种颜色时每个像素只需要 4 位
+        this.bitsPerPixel = compressed && Palette.size() <= 16 ? 4 : 8;
+        this.previous = new byte[width * height];
+        this.scratch = new int[width * height];
+        this.chunkBytes = compressed ? new ByteArrayOutputStream() : null;
+        this.chunk = compressed ? new DataOutputStream(chunkBytes) : null;
+        this.deflater = compressed ? new Deflater() : null;
+        this.dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+
+        // 写入文件头，帧数和索引位置在关闭时回填
+        dos.writeInt(FrameSerializer.MAGIC_NUMBER);
+        dos.writeInt(compressed ? FrameSerializer.VERSION_4 : FrameSerializer.VERSION_3);
+        dos.writeInt(0);
+        dos.writeInt(width);
+        dos.writeInt(height);
+        dos.writeInt(this.keyframeInterval);
+        dos.writeLong(0);
+        if (compressed) {
+            dos.writeInt(bitsPerPixel);
+            dos.writeLong(Palette.getHash());
+        }
+        offset = compressed ? FrameSerializer.HEADER_SIZE_V4 : FrameSerializer.HEADER_SIZE_V3;
+    }
+
+    public FrameWriter(File file, int width, int height, int keyframeInterval) throws IOException {
+        this(file, width, height, keyframeInterval, true);
+    }
+
+    public FrameWriter(File file, int width, int height) throws IOException {
+        this(file, width, height, FrameSerializer.DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * 追加一帧
+     *
+     * @param frame 帧缓冲区，尺寸需与写入器一致，写入后可以立即复用
+     * @throws IOException 如果写入失败
+     */
+    public void writeFrame(FrameBuffer frame) throws IOException {
+        if (frame.getWidth() != width || frame.getHeight() != height) {
+            throw new IllegalArgumentException("帧尺寸不匹配: " + frame.getWidth() + "x" + frame.getHeight());
+        }
+
+        byte[] current = frame.getData();
+        boolean forceKey = frameCount % keyframeInterval == 0;
+        boolean key;
+        if (compressed) {
+            if (forceKey && frameCount > 0) {
+                flushChunk();
+            }
+            key = FrameSerializer.writeFrameRecord(chunk, current, previous, forceKey, scratch, bitsPerPixel);
+            frameCount++;
+        } else {
+            int before = dos.size();
+            key = FrameSerializer.writeFrameRecord(dos, current, previous, forceKey, scratch);
+            appendIndex(key ? offset | FrameSerializer.KEYFRAME_FLAG : offset);
+            offset += dos.size() - before;
+            frameCount++;
+        }
+        if (key) {
+            keyframeCount++;
+        }
+
+        System.arraycopy(current, 0, previous, 0, current.length);
+    }
+
+    /**
+     * 压缩当前数据块并写入文件
+     */
+    private void flushChunk() throws IOException {
+        byte[] raw = chunkBytes.toByteArray();
+        chunkBytes.reset();
+
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == deflateBuffer.length) {
+                deflateBuffer = Arrays.copyOf(deflateBuffer, Math.max(4096, deflateBuffer.length * 2));
+            }
+            length += deflater.deflate(deflateBuffer, length, deflateBuffer.length - length);
+        }
+        dos.write(deflateBuffer, 0, length);
+
+        appendIndex(offset);
+        appendIndex(length);
+        appendIndex(raw.length);
+        appendIndex(crc.getValue());
+        offset += length;
+    }
+
+    private void appendIndex(long value) {
+        if (indexLength == index.length) {
+            index = Arrays.copyOf(index, index.length * 2);
+        }
+        index[indexLength++] = value;
+    }
+
+    /**
+     * 获取已写入的帧数
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * 获取已写入的关键帧数
+     */
+    public int getKeyframeCount() {
+        return keyframeCount;
+    }
+
+    /**
+     * 写入帧偏移索引（v4 为剩余的数据块和数据块索引）并回填文件头
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        long indexOffset;
+        try {
+            if (compressed) {
+                if (frameCount > 0) {
+                    flushChunk();
+                }
+                indexOffset = offset;
+                for (int i = 0; i < indexLength; i += 4) {
+                    dos.writeLong(index[i]);
+                    dos.writeInt((int) index[i + 1]);
+                    dos.writeInt((int) index[i + 2]);
+                    dos.writeInt((int) index[i + 3]);
+                }
+            } else {
+                indexOffset = offset;
+                for (int i = 0; i < indexLength; i++) {
+                    dos.writeLong(index[i]);
+                }
+            }
+        } finally {
+            dos.close();
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(FrameSerializer.FRAME_COUNT_POSITION);
+            raf.writeInt(frameCount);
+            raf.seek(FrameSerializer.INDEX_OFFSET_POSITION);
+            raf.writeLong(indexOffset);
+        }
+    }
+}
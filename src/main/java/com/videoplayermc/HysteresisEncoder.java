@@ -0,0 +1,167 @@
+package com.videoplayermc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 稳定编码器
+ * 噪点和压缩伪影会让颜色处在两种调色板颜色边界附近的像素逐帧来回切换，每次切换都是一次方块写入
+ * 编码器在量化前可选地对 RGB 做时域预滤波（与上一帧的滤波结果混合），
+ * 量化后只有新颜色比上一帧的颜色近出超过阈值时才改变像素，否则保留上一帧的颜色
+ * 编码结果依赖之前的帧，每个输出分辨率（以及并行处理的每一段）使用一个编码器，只在一个线程中使用
+ */
+public class HysteresisEncoder {
+
+    // 滤波状态的小数位数
+    private static final int FILTER_SHIFT = 8;
+
+    private final int width;
+    private final int height;
+    private final double threshold;
+    private final int filterWeight;
+    private final int filterThreshold;
+    private final ColorMetric metric;
+
+    // 调色板颜色在距离公式颜色空间中的坐标
+    private final double[][] points;
+
+    // 按行存储的输入像素（滤波后）
+    private final int[] rgb;
+
+    // 滤波状态：每个像素 3 个分量，带 FILTER_SHIFT 位小数
+    private final int[] filtered;
+
+    // 上一帧的编码结果（按列存储，与帧缓冲区一致）
+    private final byte[] previous;
+    private boolean hasPrevious;
+
+    private final double[] query = new double[3];
+
+    /**
+     * @param width           帧宽度
+     * @param height          帧高度
+     * @param threshold       颜色需要近出的距离（距离公式的单位，不是平方），0 表示不使用阈值
+     * @param filterStrength  时域预滤波中上一帧的比例（0 - 1），0 表示不滤波
+     * @param filterThreshold 任一分量变化超过该值的像素不滤波（RGB 分量单位），避免运动拖影
+     */
+    public HysteresisEncoder(int width, int height, double threshold, double filterStrength, int filterThreshold) {
+        this.width = width;
+        this.height = height;
+        this.threshold = Math.max(0, threshold);
+        double strength = Math.max(0, Math.min(1, filterStrength));
+        this.filterWeight = (int) Math.round((1 - strength) * (1 << FILTER_SHIFT));
+        this.filterThreshold = Math.max(0, filterThreshold);
+        this.metric = ColorQuantizer.getMetric();
+
+        Palette[] colors = Palette.getAllColors();
+        this.points = new double[colors.length][3];
+        for (int i = 0; i < colors.length; i++) {
+            metric.toSpace(colors[i].getR(), colors[i].getG(), colors[i].getB(), points[i]);
+        }
+
+        this.rgb = new int[width * height];
+        this.filtered = filterWeight < (1 << FILTER_SHIFT) ? new int[width * height * 3] : null;
+        this.previous = new byte[width * height];
+    }
+
+    /**
+     * 编码一帧
+     * 像素缓冲区第 y 行对应帧缓冲区的 y（不翻转），与 {@link ColorQuantizer#quantizePacked} 相同
+     *
+     * @param pixels         像素缓冲区（每像素 3 字节，从下标 0 开始）
+     * @param stride         每行的字节数
+     * @param bgr            字节顺序是否为 B、G、R（否则为 R、G、B）
+     * @param ditherStrength 有序抖动强度，0 表示不抖动
+     * @param out            输出帧缓冲区
+     */
+    public void encode(ByteBuffer pixels, int stride, boolean bgr, int ditherStrength, FrameBuffer out) {
+        readPixels(pixels, stride, bgr);
+
+        if (ditherStrength > 0) {
+            ColorQuantizer.quantizeFrameDithered(rgb, width, height, false, ditherStrength, out);
+        } else {
+            ColorQuantizer.quantizeFrame(rgb, width, height, out);
+        }
+
+        byte[] data = out.getData();
+        if (hasPrevious && threshold > 0) {
+            applyThreshold(data);
+        }
+        System.arraycopy(data, 0, previous, 0, previous.length);
+        hasPrevious = true;
+    }
+
+    /**
+     * 读取像素，启用时同时进行时域预滤波
+     */
+    private void readPixels(ByteBuffer pixels, int stride, boolean bgr) {
+        int first = bgr ? 2 : 0;
+        int last = bgr ? 0 : 2;
+        for (int y = 0; y < height; y++) {
+            int offset = y * stride;
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int p = offset + x * 3;
+                int r = pixels.get(p + first) & 0xFF;
+                int g = pixels.get(p + 1) & 0xFF;
+                int b = pixels.get(p + last) & 0xFF;
+                rgb[row + x] = filtered != null ? filter((row + x) * 3, r, g, b) : (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    /**
+     * 将一个像素与上一帧的滤波结果混合，变化较大的像素直接使用新值
+     *
+     * @param index 滤波状态中的位置
+     * @return 滤波后的 RGB
+     */
+    private int filter(int index, int r, int g, int b) {
+        int fr = filtered[index];
+        int fg = filtered[index + 1];
+        int fb = filtered[index + 2];
+        if (!hasPrevious
+            || Math.abs((r << FILTER_SHIFT) - fr) > filterThreshold << FILTER_SHIFT
+            || Math.abs((g << FILTER_SHIFT) - fg) > filterThreshold << FILTER_SHIFT
+            || Math.abs((b << FILTER_SHIFT) - fb) > filterThreshold << FILTER_SHIFT) {
+            fr = r << FILTER_SHIFT;
+            fg = g << FILTER_SHIFT;
+            fb = b << FILTER_SHIFT;
+        } else {
+            fr += ((r << FILTER_SHIFT) - fr) * filterWeight >> FILTER_SHIFT;
+            fg += ((g << FILTER_SHIFT) - fg) * filterWeight >> FILTER_SHIFT;
+            fb += ((b << FILTER_SHIFT) - fb) * filterWeight >> FILTER_SHIFT;
+        }
+        filtered[index] = fr;
+        filtered[index + 1] = fg;
+        filtered[index + 2] = fb;
+
+        int half = 1 << (FILTER_SHIFT - 1);
+        return ((fr + half) >> FILTER_SHIFT) << 16 | ((fg + half) >> FILTER_SHIFT) << 8 | (fb + half) >> FILTER_SHIFT;
+    }
+
+    /**
+     * 颜色改变的像素只有新颜色近出超过阈值时才保留新颜色
+     * 比较使用未抖动的像素颜色
+     */
+    private void applyThreshold(byte[] data) {
+        for (int x = 0; x < width; x++) {
+            int column = x * height;
+            for (int y = 0; y < height; y++) {
+                int position = column + y;
+                int current = data[position] & 0xFF;
+                int last = previous[position] & 0xFF;
+                if (current == last || last >= points.length) {
+                    continue;
+                }
+
+                int color = rgb[y * width + x];
+                metric.toSpace(color >> 16 & 0xFF, color >> 8 & 0xFF, color & 0xFF, query);
+                double improvement = Math.sqrt(metric.distance(query, points[last]))
+                    - Math.sqrt(metric.distance(query, points[current]));
+                if (improvement <= threshold) {
+                    data[position] = (byte) last;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.videoplayermc;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+/**
+ * PNG 帧图片目录的帧来源
+ * 读取 /processvideo 生成的 frame_xxxxx.png 文件并量化为调色板颜色
+ */
+public class ImageFrameSource implements FrameSource {
+
+    private final List<File> frameFiles;
+    private final int width;
+    private final int height;
+
+    // 像素读取缓冲区，帧来源只会被预取线程单线程访问
+    private final int[] rgb;
+
+    public ImageFrameSource(File frameDir, int width, int height) {
+        if (!frameDir.exists() || !frameDir.isDirectory()) {
+            throw new IllegalArgumentException("帧图片目录不存在: " + frameDir);
+        }
+
+        this.frameFiles = listFrameFiles(frameDir);
+        this.width = width;
+        this.height = height;
+        this.rgb = new int[width * height];
+    }
+
+    /**
+     * 列出目录中的帧图片，按帧序号排序
+     */
+    static List<File> listFrameFiles(File frameDir) {
+        List<File> frameFiles = new ArrayList<>();
+
+        // 按帧序号排序加载，序号只解析一次，排序键为序号（高 32 位）和文件下标（低 32 位）
+        File[] files = frameDir.listFiles((dir, name) -> name.endsWith(".png"));
+        if (files != null) {
+            long[] keys = new long[files.length];
+            for (int i = 0; i < files.length; i++) {
+                String number = files[i].getName().replace("frame_", "").replace(".png", "");
+                keys[i] = (long) Integer.parseInt(number) << 32 | i;
+            }
+            Arrays.sort(keys);
+            for (long key : keys) {
+                frameFiles.add(files[(int) key]);
+            }
+        }
+        return frameFiles;
+    }
+
+    @Override
+    public int getFrameCount() {
+        return frameFiles.size();
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void readFrame(int index, FrameBuffer out) throws IOException {
+        File frameFile = frameFiles.get(index);
+        BufferedImage image = ImageIO.read(frameFile);
+        if (image == null) {
+            throw new IOException("无法读取帧图片: " + frameFile.getName());
+        }
+        if (image.getWidth() != width || image.getHeight() != height) {
+            throw new IOException("帧图片尺寸不匹配: " + frameFile.getName());
+        }
+        VideoManager.convertImageToPalette(image, rgb, out);
+    }
+}
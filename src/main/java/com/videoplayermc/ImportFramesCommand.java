@@ -0,0 +1,84 @@
+package com.videoplayermc;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 导入帧图片命令处理器
+ * 将旧版预处理生成的帧图片目录转换为帧数据文件，导入由 {@link ProcessingScheduler} 排队执行
+ * 命令格式: /importframes [视频名称]
+ */
+public class ImportFramesCommand implements CommandExecutor {
+
+    private final VideoPlayerMC plugin;
+    private final ProcessingScheduler scheduler;
+
+    public ImportFramesCommand(VideoPlayerMC plugin, ProcessingScheduler scheduler) {
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        // 检查权限
+        if (!sender.hasPermission("videoplayermc.process")) {
+            sender.sendMessage("§c你没有权限使用此命令！");
+            return true;
+        }
+
+        // 检查参数数量
+        if (args.length > 1) {
+            sender.sendMessage("§c用法: /importframes [视频名称]");
+            return true;
+        }
+
+        File processedDir = new File(plugin.getDataFolder(), "processed");
+        if (!processedDir.exists()) {
+            sender.sendMessage("§c处理后的视频目录不存在！");
+            return true;
+        }
+
+        // 指定名称时只导入该目录，否则导入所有尚未转换的帧图片目录
+        List<String> names = new ArrayList<>();
+        if (args.length == 1) {
+            if (!new File(processedDir, args[0]).isDirectory()) {
+                sender.sendMessage("§c帧图片目录不存在: " + args[0]);
+                return true;
+            }
+            names.add(args[0]);
+        } else {
+            File[] dirs = processedDir.listFiles(File::isDirectory);
+            if (dirs != null) {
+                for (File dir : dirs) {
+                    if (!new File(processedDir, dir.getName() + ".vmfr").exists()) {
+                        names.add(dir.getName());
+                    }
+                }
+            }
+        }
+
+        if (names.isEmpty()) {
+            sender.sendMessage("§7没有需要导入的帧图片目录");
+            return true;
+        }
+
+        // 每个目录作为一个任务排队，与预处理共享工作线程，可以用 /videojobs 查看或取消
+        for (String name : names) {
+            try {
+                ProcessingJob job = scheduler.submitImport(sender, new File(processedDir, name),
+                    new File(processedDir, name + ".vmfr"), name);
+                sender.sendMessage("§e帧图片目录已加入处理队列: " + name + "（任务 #" + job.getId() + "）");
+            } catch (IllegalStateException e) {
+                sender.sendMessage("§c" + name + ": " + e.getMessage());
+            }
+        }
+        sender.sendMessage("§7这可能需要一些时间，使用 /videojobs 查看进度");
+
+        return true;
+    }
+}
@@ -0,0 +1,103 @@
+package com.videoplayermc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时直方图
+ * 按 2 的幂划分区间（纳秒），记录和读取都不加锁，可以由预取线程记录、主线程读取
+ * 百分位按区间上界估算，误差不超过一倍
+ */
+public class LatencyHistogram {
+
+    // 区间数量：区间 i 覆盖 [2^(i-1), 2^i) 纳秒，最后一个区间包括所有更长的耗时
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * 获取记录次数
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * 获取平均耗时（纳秒）
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) total.get() / n;
+    }
+
+    /**
+     * 获取最大耗时（纳秒）
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * 估算百分位耗时（纳秒），返回所在区间的上界，不超过最大耗时
+     *
+     * @param percentile 百分位（0 - 100）
+     */
+    public long getPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(n * Math.min(100, Math.max(0, percentile)) / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                return Math.min(i == 0 ? 0 : (1L << i) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * 格式化为 "平均 / p50 / p99 / 最大"（毫秒）
+     */
+    public String format() {
+        if (getCount() == 0) {
+            return "无数据";
+        }
+        return String.format("平均 %.2f / p50 %.2f / p99 %.2f / 最大 %.2f ms（%d 次）",
+            getMean() / 1e6, getPercentile(50) / 1e6, getPercentile(99) / 1e6, getMax() / 1e6, getCount());
+    }
+}
@@ -0,0 +1,104 @@
+package com.videoplayermc;
+
+/**
+ * 地图颜色表
+ * 原版地图的颜色由基础颜色和 4 种亮度组成，地图颜色序号 = 基础颜色序号 * 4 + 亮度，基础颜色 0 为透明
+ * 帧数据中已经是调色板序号，因此查找表按调色板序号映射到最近的地图颜色，
+ * 使用与 {@link ColorQuantizer} 相同的距离公式，首次使用时计算一次
+ * 画面颜色因此限于调色板中的颜色，每个像素先量化到调色板、再映射到地图颜色
+ */
+public final class MapColorTable {
+
+    /**
+     * 透明（地图上不绘制）
+     */
+    public static final byte TRANSPARENT = 0;
+
+    // 基础颜色（RGB），序号从 1 开始，与原版 MapColor 的 id 一致
+    private static final int[] BASE_COLORS = {
+        0x7FB238, 0xF7E9A3, 0xC7C7C7, 0xFF0000, 0xA0A0FF, 0xA7A7A7, 0x007C00, 0xFFFFFF,
+        0xA4A8B8, 0x976D4D, 0x707070, 0x4040FF, 0x8F7748, 0xFFFCF5, 0xD87F33, 0xB24CD8,
+        0x6699D8, 0xE5E533, 0x7FCC19, 0xF27FA5, 0x4C4C4C, 0x999999, 0x4C7F99, 0x7F3FB2,
+        0x334CB2, 0x664C33, 0x667F33, 0x993333, 0x191919, 0xFAEE4D, 0x5CDBD5, 0x4A80FF,
+        0x00D93A, 0x815631, 0x700200, 0xD1B1A1, 0x9F5224, 0x95576C, 0x706C8A, 0xBA8524,
+        0x677535, 0xA04D4E, 0x392923, 0x876B62, 0x575C5C, 0x7A4958, 0x4C3E5C, 0x4C3223,
+        0x4C522A, 0x8E3C2E, 0x251610, 0xBD3031, 0x943F61, 0x5C191D, 0x167E86, 0x3A8E8C,
+        0x562C3E, 0x14B485, 0x646464, 0xD8AF93, 0x7FA796
+    };
+
+    // 4 种亮度的系数（/ 255）
+    private static final int[] SHADES = {180, 220, 255, 135};
+
+    // 每个地图颜色序号对应的 RGB，透明颜色为 -1
+    private static final int[] COLORS = buildColors();
+
+    // 调色板序号到地图颜色序号的查找表
+    private static volatile byte[] paletteLookup;
+
+    private MapColorTable() {
+    }
+
+    private static int[] buildColors() {
+        int[] colors = new int[(BASE_COLORS.length + 1) * SHADES.length];
+        for (int i = 0; i < SHADES.length; i++) {
+            colors[i] = -1;
+        }
+        for (int base = 0; base < BASE_COLORS.length; base++) {
+            int rgb = BASE_COLORS[base];
+            for (int shade = 0; shade < SHADES.length; shade++) {
+                int r = (rgb >> 16 & 0xFF) * SHADES[shade] / 255;
+                int g = (rgb >> 8 & 0xFF) * SHADES[shade] / 255;
+                int b = (rgb & 0xFF) * SHADES[shade] / 255;
+                colors[(base + 1) * SHADES.length + shade] = (r << 16) | (g << 8) | b;
+            }
+        }
+        return colors;
+    }
+
+    /**
+     * 按颜色距离公式找到最近的地图颜色序号（不包括透明）
+     */
+    public static byte findClosest(int r, int g, int b, ColorMetric metric) {
+        double[] query = new double[3];
+        double[] candidate = new double[3];
+        metric.toSpace(r, g, b, query);
+
+        int closest = SHADES.length;
+        double minDistance = Double.MAX_VALUE;
+        for (int i = SHADES.length; i < COLORS.length; i++) {
+            int rgb = COLORS[i];
+            metric.toSpace(rgb >> 16 & 0xFF, rgb >> 8 & 0xFF, rgb & 0xFF, candidate);
+            double distance = metric.distance(query, candidate);
+            if (distance < minDistance) {
+                minDistance = distance;
+                closest = i;
+            }
+        }
+        return (byte) closest;
+    }
+
+    /**
+     * 获取调色板序号到地图颜色序号的查找表（长度 256，超出调色板的序号映射到透明）
+     */
+    public static byte[] getPaletteLookup() {
+        byte[] lookup = paletteLookup;
+        if (lookup == null) {
+            lookup = new byte[256];
+            Palette[] colors = Palette.getAllColors();
+            ColorMetric metric = ColorQuantizer.getMetric();
+            for (int i = 0; i < colors.length; i++) {
+                lookup[i] = findClosest(colors[i].getR(), colors[i].getG(), colors[i].getB(), metric);
+            }
+            paletteLookup = lookup;
+        }
+        return lookup;
+    }
+
+    /**
+     * 获取地图颜色序号对应的 RGB，透明颜色返回 -1
+     */
+    public static int getRgb(byte mapColor) {
+        int index = mapColor & 0xFF;
+        return index < COLORS.length ? COLORS[index] : -1;
+    }
+}
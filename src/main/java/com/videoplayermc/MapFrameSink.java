@@ -0,0 +1,373 @@
+package com.videoplayermc;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.MapMeta;
+import org.bukkit.map.MapCanvas;
+import org.bukkit.map.MapRenderer;
+import org.bukkit.map.MapView;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 地图帧输出
+ * 将帧绘制到由 128x128 地图组成的网格上，地图放在朝南（+z）的隐形展示框中，每个方块位置一张地图，
+ * 画面对齐网格左下角，一个像素对应地图上的一个点，不修改世界中的方块
+ * 每张地图记录变化区域（脏矩形），服务器发送地图更新时只包含该区域
+ */
+public class MapFrameSink implements FrameSink {
+
+    /**
+     * 每张地图的边长（像素）
+     */
+    public static final int MAP_SIZE = 128;
+
+    // 每复制多少个像素检查一次时间预算
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final Location origin;
+    private final int width;
+    private final int height;
+    private final int tilesX;
+    private final int tilesY;
+    private final ViewerTracker viewers;
+    private final byte[] lookup;
+
+    // 地图按行存储，第 0 行为最上方
+    private final MapTile[] tiles;
+    private final List<ItemFrame> itemFrames = new ArrayList<>();
+
+    // 每个像素所属的地图序号和在地图中的位置（y * MAP_SIZE + x）
+    private final int[] pixelTile;
+    private final int[] pixelOffset;
+
+    // 待复制到地图的像素
+    private final int[] pending;
+    private final boolean[] dirty;
+    private int pendingCount;
+
+    private FrameBuffer previousFrame;
+    private int[] diff;
+    private long totalWrites;
+
+    /**
+     * 获取屏幕的地图并在起始位置放置展示框
+     * 展示框挂在 z - 1 的方块上，固定且不会掉落；地图按屏幕名称沿用，见 {@link MapIdStore}
+     *
+     * @param screenName 屏幕名称
+     * @param origin     左下角展示框的位置
+     * @param width      画面宽度（像素）
+     * @param height     画面高度（像素）
+     */
+    public MapFrameSink(String screenName, Location origin, int width, int height) {
+        this.origin = origin.clone();
+        this.width = width;
+        this.height = height;
+        this.tilesX = (width + MAP_SIZE - 1) / MAP_SIZE;
+        this.tilesY = (height + MAP_SIZE - 1) / MAP_SIZE;
+        this.viewers = ViewerTracker.forArea(this.origin, tilesX, tilesY);
+        this.lookup = MapColorTable.getPaletteLookup();
+
+        int gridHeight = tilesY * MAP_SIZE;
+        this.pixelTile = new int[width * height];
+        this.pixelOffset = new int[width * height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                // 帧缓冲区 y = 0 为最下方，地图第 0 行为最上方
+                int row = gridHeight - 1 - y;
+                int position = x * height + y;
+                pixelTile[position] = (row / MAP_SIZE) * tilesX + x / MAP_SIZE;
+                pixelOffset[position] = (row % MAP_SIZE) * MAP_SIZE + x % MAP_SIZE;
+            }
+        }
+        this.pending = new int[width * height];
+        this.dirty = new boolean[width * height];
+
+        this.tiles = new MapTile[tilesX * tilesY];
+        World world = this.origin.getWorld();
+        List<MapView> views = MapIdStore.acquire(screenName, world, tiles.length);
+        for (int row = 0; row < tilesY; row++) {
+            for (int column = 0; column < tilesX; column++) {
+                MapTile tile = new MapTile();
+                tiles[row * tilesX + column] = tile;
+                Location location = this.origin.clone().add(column, tilesY - 1 - row, 0);
+                itemFrames.add(spawnFrame(world, location, prepareMap(views.get(row * tilesX + column), tile)));
+            }
+        }
+    }
+
+    /**
+     * 让地图只由指定地图块绘制
+     * 沿用的地图上可能还有之前屏幕的地图块，一并移除
+     */
+    private static MapView prepareMap(MapView view, MapTile tile) {
+        for (MapRenderer renderer : new ArrayList<>(view.getRenderers())) {
+            view.removeRenderer(renderer);
+        }
+        view.setTrackingPosition(false);
+        view.setUnlimitedTracking(false);
+        view.addRenderer(tile);
+        return view;
+    }
+
+    /**
+     * 在指定位置放置显示地图的展示框
+     */
+    private static ItemFrame spawnFrame(World world, Location location, MapView view) {
+        ItemStack item = new ItemStack(Material.FILLED_MAP);
+        MapMeta meta = (MapMeta) item.getItemMeta();
+        meta.setMapView(view);
+        item.setItemMeta(meta);
+
+        ItemFrame frame = world.spawn(location, ItemFrame.class);
+        frame.setFacingDirection(BlockFace.SOUTH, true);
+        frame.setItem(item);
+        frame.setFixed(true);
+        frame.setVisible(false);
+        // 不随区块保存，插件停止后不会留下没有绘制器的地图
+        frame.setPersistent(false);
+        return frame;
+    }
+
+    @Override
+    public void placeFrame(FrameBuffer frame) {
+        if (previousFrame == null) {
+            markAll();
+        } else if (frame.hasChangesFrom(previousFrame.getIndex())) {
+            mark(frame.getChanges(), frame.getChangeCount());
+        } else {
+            if (diff == null) {
+                diff = new int[width * height];
+            }
+            mark(diff, frame.diff(previousFrame, diff));
+        }
+
+        if (previousFrame != null) {
+            previousFrame.release();
+        }
+        previousFrame = frame;
+    }
+
+    /**
+     * 在时间预算内把待复制的像素转换为地图颜色并写入各地图，扩大对应地图的变化区域
+     */
+    @Override
+    public int flush(long deadline) {
+        if (pendingCount == 0 || previousFrame == null) {
+            return 0;
+        }
+
+        byte[] data = previousFrame.getData();
+        int written = 0;
+        while (written < pendingCount) {
+            if (written % CHECK_INTERVAL == 0 && written > 0 && System.nanoTime() >= deadline) {
+                break;
+            }
+            int position = pending[written++];
+            dirty[position] = false;
+            tiles[pixelTile[position]].set(pixelOffset[position], lookup[data[position] & 0xFF]);
+        }
+
+        int remaining = pendingCount - written;
+        System.arraycopy(pending, written, pending, 0, remaining);
+        pendingCount = remaining;
+        totalWrites += written;
+        return written;
+    }
+
+    private void mark(int[] positions, int count) {
+        for (int i = 0; i < count; i++) {
+            int position = positions[i];
+            if (!dirty[position]) {
+                dirty[position] = true;
+                pending[pendingCount++] = position;
+            }
+        }
+    }
+
+    private void markAll() {
+        for (int i = 0; i < dirty.length; i++) {
+            dirty[i] = true;
+            pending[i] = i;
+        }
+        pendingCount = dirty.length;
+    }
+
+    private void discardPending() {
+        for (int i = 0; i < pendingCount; i++) {
+            dirty[pending[i]] = false;
+        }
+        pendingCount = 0;
+    }
+
+    @Override
+    public boolean hasPendingWrites() {
+        return pendingCount > 0;
+    }
+
+    @Override
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * 移除展示框并释放上一帧，立即完成
+     */
+    @Override
+    public void clear() {
+        discardPending();
+        removeFrames();
+        releasePreviousFrame();
+    }
+
+    /**
+     * 新的输出会在同一位置放置自己的展示框，这里直接移除所有展示框
+     */
+    @Override
+    public void clearOutside(int keepWidth, int keepHeight) {
+        clear();
+    }
+
+    /**
+     * 地图离开插件无法继续绘制，与清除相同
+     */
+    @Override
+    public void discard() {
+        clear();
+    }
+
+    private void removeFrames() {
+        for (ItemFrame frame : itemFrames) {
+            frame.remove();
+        }
+        itemFrames.clear();
+    }
+
+    private void releasePreviousFrame() {
+        if (previousFrame != null) {
+            previousFrame.release();
+            previousFrame = null;
+        }
+    }
+
+    /**
+     * 新进入视距的玩家由服务器发送完整的地图，这里只记录观看者
+     */
+    @Override
+    public void updateViewers(Collection<? extends FrameViewer> candidates) {
+        viewers.update(candidates);
+    }
+
+    @Override
+    public Collection<FrameViewer> getViewers() {
+        return viewers.getViewers();
+    }
+
+    @Override
+    public int getViewerCount() {
+        return viewers.getViewerCount();
+    }
+
+    @Override
+    public long getTotalWrites() {
+        return totalWrites;
+    }
+
+    @Override
+    public Location getOrigin() {
+        return origin.clone();
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 获取地图网格的列数
+     */
+    public int getTilesX() {
+        return tilesX;
+    }
+
+    /**
+     * 获取地图网格的行数
+     */
+    public int getTilesY() {
+        return tilesY;
+    }
+
+    /**
+     * 一张地图的颜色和变化区域
+     * 服务器发送地图更新前调用 {@link #render}，只把变化区域复制到画布，
+     * 画布只对实际改变的点标记脏区域，更新数据包只包含该区域
+     */
+    static class MapTile extends MapRenderer {
+
+        private final byte[] colors = new byte[MAP_SIZE * MAP_SIZE];
+
+        // 变化区域（包含边界），minX > maxX 表示没有变化
+        private int minX = MAP_SIZE;
+        private int minY = MAP_SIZE;
+        private int maxX = -1;
+        private int maxY = -1;
+
+        MapTile() {
+            // 所有玩家看到相同的画面
+            super(false);
+        }
+
+        /**
+         * 设置一个点的颜色，颜色改变时扩大变化区域
+         *
+         * @param offset 位置（y * MAP_SIZE + x）
+         * @param color  地图颜色序号
+         */
+        void set(int offset, byte color) {
+            if (colors[offset] == color) {
+                return;
+            }
+            colors[offset] = color;
+            int x = offset % MAP_SIZE;
+            int y = offset / MAP_SIZE;
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+
+        /**
+         * 颜色已经是地图颜色序号（见 {@link MapColorTable}），直接写入序号，
+         * 不使用 setPixelColor 按 RGB 为每个点重新匹配颜色
+         */
+        @Override
+        @SuppressWarnings("deprecation")
+        public void render(MapView map, MapCanvas canvas, Player player) {
+            if (minX > maxX) {
+                return;
+            }
+            for (int y = minY; y <= maxY; y++) {
+                int row = y * MAP_SIZE;
+                for (int x = minX; x <= maxX; x++) {
+                    canvas.setPixel(x, y, colors[row + x]);
+                }
+            }
+            minX = MAP_SIZE;
+            minY = MAP_SIZE;
+            maxX = -1;
+            maxY = -1;
+        }
+    }
+}
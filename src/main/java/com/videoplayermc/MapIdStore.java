@@ -0,0 +1,135 @@
+package com.videoplayermc;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.map.MapView;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * 地图模式屏幕使用的地图编号
+ * 服务器创建的地图会永久保存在世界数据中，每次创建屏幕都新建地图会不断留下无用的地图，
+ * 因此按屏幕名称记录地图编号，重新创建同名屏幕（重新播放、切换分辨率、重启服务器后）时沿用这些地图
+ * 编号保存在插件目录的 maps.properties 中，每行为 "屏幕名称=编号,编号,..."
+ */
+public final class MapIdStore {
+
+    private static final String FILE_NAME = "maps.properties";
+
+    private static final Map<String, List<Integer>> ids = new HashMap<>();
+    private static File file;
+    private static Logger logger;
+
+    private MapIdStore() {
+    }
+
+    /**
+     * 读取保存的地图编号
+     * 未配置时只在内存中记录
+     *
+     * @param dataFolder 插件目录
+     * @param log        读写失败时使用的日志
+     */
+    public static void configure(File dataFolder, Logger log) {
+        file = new File(dataFolder, FILE_NAME);
+        logger = log;
+        ids.clear();
+        if (!file.isFile()) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            logger.warning("无法读取地图编号: " + e.getMessage());
+            return;
+        }
+        for (String name : properties.stringPropertyNames()) {
+            List<Integer> list = new ArrayList<>();
+            for (String id : properties.getProperty(name).split(",")) {
+                try {
+                    list.add(Integer.parseInt(id.trim()));
+                } catch (NumberFormatException e) {
+                    // 忽略无效的编号，需要时重新创建地图
+                }
+            }
+            ids.put(name, list);
+        }
+    }
+
+    /**
+     * 获取屏幕的地图
+     * 优先沿用为该屏幕记录的地图，地图不存在或数量不足时创建新地图并记录其编号
+     * 返回的地图保留服务器默认的绘制器，由调用方替换
+     *
+     * @param screenName 屏幕名称
+     * @param world      创建新地图时使用的世界
+     * @param count      需要的地图数
+     * @return 地图列表，长度为 count
+     */
+    public static List<MapView> acquire(String screenName, World world, int count) {
+        List<Integer> known = ids.computeIfAbsent(screenName, name -> new ArrayList<>());
+        List<MapView> views = new ArrayList<>(count);
+        boolean changed = false;
+        for (int i = 0; i < count; i++) {
+            MapView view = i < known.size() ? Bukkit.getMap(known.get(i)) : null;
+            if (view == null) {
+                view = Bukkit.createMap(world);
+                if (i < known.size()) {
+                    known.set(i, view.getId());
+                } else {
+                    known.add(view.getId());
+                }
+                changed = true;
+            }
+            views.add(view);
+        }
+        if (changed) {
+            save();
+        }
+        return views;
+    }
+
+    private static void save() {
+        if (file == null) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        for (Map.Entry<String, List<Integer>> entry : ids.entrySet()) {
+            StringBuilder builder = new StringBuilder();
+            for (int id : entry.getValue()) {
+                if (builder.length() > 0) {
+                    builder.append(',');
+                }
+                builder.append(id);
+            }
+            properties.setProperty(entry.getKey(), builder.toString());
+        }
+
+        File tempFile = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        try {
+            try (OutputStream out = new FileOutputStream(tempFile)) {
+                properties.store(out, "VideoPlayerMC map ids");
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            tempFile.delete();
+            logger.warning("无法写入地图编号: " + e.getMessage());
+        }
+    }
+}
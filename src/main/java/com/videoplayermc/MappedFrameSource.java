@@ -0,0 +1,206 @@
+package com.videoplayermc;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于内存映射的帧数据文件（.vmfr）帧来源
+ * 直接从映射的文件内容中按需解码，不把帧加载到堆内存中
+ * v3 文件通过文件头指向的帧偏移索引定位任意帧，跳转时只需从最近的关键帧解码到目标帧，
+ * 开销只取决于关键帧间隔，与视频长度无关
+ * v1 文件按固定帧长计算偏移，v2 文件在打开时扫描一次建立索引
+ * v4 文件的帧记录经过压缩，由 {@link CompressedFrameSource} 读取
+ */
+public class MappedFrameSource implements FrameSource {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final FrameSerializer.Header header;
+    private final int frameSize;
+
+    // v2 文件没有帧偏移索引，打开时扫描建立
+    private final long[] scannedIndex;
+
+    // 当前解码状态（stateIndex 对应帧的像素），差分帧在此基础上应用变化
+    private final FrameBuffer state;
+    private int stateIndex = -1;
+
+    public MappedFrameSource(File file) throws IOException {
+        this(file, null);
+    }
+
+    /**
+     * @param file        帧数据文件
+     * @param knownHeader 已读取的文件头（例如来自 {@link VideoCatalog}），为 null 时从文件读取
+     */
+    MappedFrameSource(File file, FrameSerializer.Header knownHeader) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("帧数据文件过大，无法映射: " + file.getName());
+            }
+
+            this.header = knownHeader != null ? knownHeader
+                : FrameSerializer.readHeader(new DataInputStream(Channels.newInputStream(channel.position(0))));
+            if (header.version == FrameSerializer.VERSION_4) {
+                throw new IOException("压缩的帧数据文件需要使用 CompressedFrameSource 读取: " + file.getName());
+            }
+            this.frameSize = header.width * header.height;
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            this.state = new FrameBuffer(header.width, header.height);
+            this.scannedIndex = header.version == FrameSerializer.VERSION_2 ? scanIndex() : null;
+
+            if (header.version >= FrameSerializer.VERSION_3
+                && header.indexOffset + 8L * header.frameCount > size) {
+                throw new IOException("帧偏移索引不完整: " + file.getName());
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getFrameCount() {
+        return header.frameCount;
+    }
+
+    @Override
+    public int getWidth() {
+        return header.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return header.height;
+    }
+
+    /**
+     * 读取指定帧
+     * 顺序读取时直接应用差分；跳转时从目标帧之前最近的关键帧开始解码
+     * 差分帧的变化列表（相对于 index - 1）会写入输出缓冲区
+     */
+    @Override
+    public void readFrame(int index, FrameBuffer out) throws IOException {
+        if (index < 0 || index >= header.frameCount) {
+            throw new IOException("帧索引超出范围: " + index);
+        }
+
+        if (index != stateIndex + 1 || stateIndex < 0) {
+            // 跳转：找到不晚于目标帧的最近关键帧，如果当前状态更近则从当前状态继续
+            int keyframe = index;
+            while (keyframe > 0 && !isKeyframe(keyframe)) {
+                keyframe--;
+            }
+            int start = stateIndex >= keyframe && stateIndex < index ? stateIndex + 1 : keyframe;
+            for (int i = start; i < index; i++) {
+                decodeRecord(i);
+            }
+        }
+
+        boolean key = decodeRecord(index);
+
+        if (key) {
+            out.clearChanges();
+        } else {
+            int count = state.getChangeCount();
+            System.arraycopy(state.getChanges(), 0, out.prepareChanges(), 0, count);
+            out.setChanges(count, index - 1);
+        }
+        System.arraycopy(state.getData(), 0, out.getData(), 0, frameSize);
+    }
+
+    /**
+     * 获取帧记录在文件中的偏移
+     */
+    private int frameOffset(int index) {
+        switch (header.version) {
+            case FrameSerializer.VERSION_1:
+                // v1 每帧前有 8 字节的宽高
+                return (int) (header.headerSize + index * (8L + frameSize));
+            case FrameSerializer.VERSION_2:
+                return (int) scannedIndex[index];
+            default:
+                return (int) (buffer.getLong((int) (header.indexOffset + 8L * index)) & ~FrameSerializer.KEYFRAME_FLAG);
+        }
+    }
+
+    /**
+     * 检查指定帧是否为关键帧
+     */
+    private boolean isKeyframe(int index) {
+        switch (header.version) {
+            case FrameSerializer.VERSION_1:
+                return true;
+            case FrameSerializer.VERSION_2:
+                return buffer.get(frameOffset(index)) == FrameSerializer.FRAME_KEY;
+            default:
+                return (buffer.getLong((int) (header.indexOffset + 8L * index)) & FrameSerializer.KEYFRAME_FLAG) != 0;
+        }
+    }
+
+    /**
+     * 将指定帧解码到当前状态
+     * 差分帧要求当前状态为上一帧
+     *
+     * @return 是否为关键帧
+     */
+    private boolean decodeRecord(int index) throws IOException {
+        int offset = frameOffset(index);
+        byte[] data = state.getData();
+        stateIndex = -1;
+
+        if (header.version == FrameSerializer.VERSION_1) {
+            buffer.get(offset + 8, data);
+            state.clearChanges();
+            stateIndex = index;
+            return true;
+        }
+
+        boolean key = offset < buffer.limit() && buffer.get(offset) == FrameSerializer.FRAME_KEY;
+        FrameSerializer.decodeRecord(buffer, offset, index, state, 8);
+        stateIndex = index;
+        return key;
+    }
+
+    /**
+     * 扫描 v2 文件建立帧偏移索引
+     */
+    private long[] scanIndex() throws IOException {
+        long[] index = new long[header.frameCount];
+        ByteBuffer in = FrameSerializer.recordBuffer(buffer, header.headerSize, 0);
+        for (int i = 0; i < header.frameCount; i++) {
+            index[i] = in.position();
+            FrameSerializer.requireRemaining(in, 1);
+            int type = in.get() & 0xFF;
+            if (type == FrameSerializer.FRAME_KEY) {
+                FrameSerializer.requireRemaining(in, frameSize);
+                in.position(in.position() + frameSize);
+            } else if (type == FrameSerializer.FRAME_DELTA) {
+                FrameSerializer.requireRemaining(in, 4);
+                int count = in.getInt();
+                for (int c = 0; c < count; c++) {
+                    FrameSerializer.readVarInt(in);
+                    FrameSerializer.requireRemaining(in, 1);
+                    in.get();
+                }
+            } else {
+                throw new IOException("未知的帧类型: " + type);
+            }
+        }
+        return index;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // 映射在缓冲区被回收前保持有效，可以直接关闭通道
+        channel.close();
+    }
+}
@@ -0,0 +1,108 @@
+package com.videoplayermc;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 客户端显示模式的方块写入器
+ * 不修改世界，待写入的方块按区块段分组后作为假方块更新发送给视距内的观看者，
+ * 每个区块段一个多方块更新，区块不会被标记为需要保存
+ * 新进入范围的观看者由 {@link #resync} 发送完整的当前画面；清除时发送世界中真实的方块，恢复原来的样子
+ */
+public class PacketBlockWriter extends ChunkBlockWriter {
+
+    private final ViewerTracker viewers;
+
+    // 所有像素位置，重新同步时按区块段分组
+    private final int[] allPositions;
+
+    // 统计：发送的多方块更新次数（每个观看者每个区块段一次）
+    private long packetsSent;
+
+    /**
+     * @param world   世界
+     * @param origin  起始位置
+     * @param width   宽度
+     * @param height  高度
+     * @param viewers 观看者列表，由放置器更新
+     */
+    public PacketBlockWriter(World world, Location origin, int width, int height, ViewerTracker viewers) {
+        super(world, origin, width, height);
+        this.viewers = viewers;
+        this.allPositions = new int[width * height];
+        for (int i = 0; i < allPositions.length; i++) {
+            allPositions[i] = i;
+        }
+    }
+
+    /**
+     * 向新进入范围的观看者发送完整的当前画面
+     *
+     * @param joined 新进入范围的观看者
+     * @param data   当前画面的像素数据，没有画面（尚未放置或正在清除）时为 null
+     */
+    public void resync(Collection<FrameViewer> joined, byte[] data) {
+        if (joined.isEmpty() || data == null) {
+            return;
+        }
+
+        groupByBucket(allPositions, allPositions.length);
+        for (int b = 0; b < bucketStart.length - 1; b++) {
+            if (bucketStart[b] < bucketStart[b + 1]) {
+                send(joined, bucketStart[b], bucketStart[b + 1], data);
+            }
+        }
+    }
+
+    /**
+     * 将一个区块段中的方块作为一个多方块更新发送给所有观看者
+     * 超出时间预算时整个区块段顺延到下一次写入
+     */
+    @Override
+    protected int writeBucket(int bucketChunk, int start, int end, byte[] data, long deadline, int written) {
+        if (written > 0 && System.nanoTime() >= deadline) {
+            return 0;
+        }
+        // 没有观看者时直接丢弃，之后进入范围的观看者会收到完整画面
+        if (viewers.getViewerCount() > 0) {
+            send(viewers.getViewers(), start, end, data);
+        }
+        return end - start;
+    }
+
+    /**
+     * 发送 sorted 中 [start, end) 范围的方块
+     *
+     * @param data 像素数据，为 null 时发送世界中真实的方块
+     */
+    private void send(Collection<FrameViewer> targets, int start, int end, byte[] data) {
+        Map<Location, BlockData> changes = new HashMap<>(Math.max(16, (end - start) * 4 / 3 + 1));
+        for (int i = start; i < end; i++) {
+            int position = sorted[i];
+            int x = position / height;
+            int y = position - x * height;
+            int blockX = originX + x;
+            int blockY = originY + y;
+            BlockData blockData = data != null ? getBlockData(data, position)
+                : world.getBlockAt(blockX, blockY, originZ).getBlockData();
+            changes.put(new Location(world, blockX, blockY, originZ), blockData);
+        }
+
+        for (FrameViewer viewer : targets) {
+            viewer.sendBlockChanges(changes);
+            packetsSent++;
+        }
+    }
+
+    /**
+     * 获取累计发送的多方块更新次数
+     */
+    public long getPacketsSent() {
+        return packetsSent;
+    }
+}
@@ -2,38 +2,68 @@ package com.videoplayermc;
 
 import org.bukkit.Material;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
- * 16种混凝土颜色的调色板
- * 每种颜色都有对应的 Minecraft 方块类型和 RGB 值
+ * 方块颜色调色板
+ * 每种颜色都有对应的 Minecraft 方块类型和 RGB 值，帧数据中保存的是颜色在调色板中的序号
+ * 默认使用 16 种混凝土，可以在配置文件中替换为最多 256 种方块（陶瓦、羊毛、带釉陶瓦等）
  */
-public enum Palette {
-    WHITE(Material.WHITE_CONCRETE, 219, 219, 219),
-    ORANGE(Material.ORANGE_CONCRETE, 235, 120, 60),
-    MAGENTA(Material.MAGENTA_CONCRETE, 200, 80, 180),
-    LIGHT_BLUE(Material.LIGHT_BLUE_CONCRETE, 120, 200, 220),
-    YELLOW(Material.YELLOW_CONCRETE, 250, 220, 60),
-    LIME(Material.LIME_CONCRETE, 130, 220, 90),
-    PINK(Material.PINK_CONCRETE, 230, 150, 170),
-    GRAY(Material.GRAY_CONCRETE, 95, 95, 95),
-    LIGHT_GRAY(Material.LIGHT_GRAY_CONCRETE, 170, 170, 170),
-    CYAN(Material.CYAN_CONCRETE, 60, 180, 180),
-    PURPLE(Material.PURPLE_CONCRETE, 140, 70, 180),
-    BLUE(Material.BLUE_CONCRETE, 60, 100, 220),
-    BROWN(Material.BROWN_CONCRETE, 130, 90, 60),
-    GREEN(Material.GREEN_CONCRETE, 100, 160, 70),
-    RED(Material.RED_CONCRETE, 210, 60, 60),
-    BLACK(Material.BLACK_CONCRETE, 40, 40, 40);
+public final class Palette {
+
+    /**
+     * 调色板最多的颜色数（帧数据每个像素 1 字节）
+     */
+    public static final int MAX_COLORS = 256;
+
+    public static final Palette WHITE = new Palette("WHITE", Material.WHITE_CONCRETE, 219, 219, 219);
+    public static final Palette ORANGE = new Palette("ORANGE", Material.ORANGE_CONCRETE, 235, 120, 60);
+    public static final Palette MAGENTA = new Palette("MAGENTA", Material.MAGENTA_CONCRETE, 200, 80, 180);
+    public static final Palette LIGHT_BLUE = new Palette("LIGHT_BLUE", Material.LIGHT_BLUE_CONCRETE, 120, 200, 220);
+    public static final Palette YELLOW = new Palette("YELLOW", Material.YELLOW_CONCRETE, 250, 220, 60);
+    public static final Palette LIME = new Palette("LIME", Material.LIME_CONCRETE, 130, 220, 90);
+    public static final Palette PINK = new Palette("PINK", Material.PINK_CONCRETE, 230, 150, 170);
+    public static final Palette GRAY = new Palette("GRAY", Material.GRAY_CONCRETE, 95, 95, 95);
+    public static final Palette LIGHT_GRAY = new Palette("LIGHT_GRAY", Material.LIGHT_GRAY_CONCRETE, 170, 170, 170);
+    public static final Palette CYAN = new Palette("CYAN", Material.CYAN_CONCRETE, 60, 180, 180);
+    public static final Palette PURPLE = new Palette("PURPLE", Material.PURPLE_CONCRETE, 140, 70, 180);
+    public static final Palette BLUE = new Palette("BLUE", Material.BLUE_CONCRETE, 60, 100, 220);
+    public static final Palette BROWN = new Palette("BROWN", Material.BROWN_CONCRETE, 130, 90, 60);
+    public static final Palette GREEN = new Palette("GREEN", Material.GREEN_CONCRETE, 100, 160, 70);
+    public static final Palette RED = new Palette("RED", Material.RED_CONCRETE, 210, 60, 60);
+    public static final Palette BLACK = new Palette("BLACK", Material.BLACK_CONCRETE, 40, 40, 40);
+
+    // 默认的 16 种混凝土
+    private static final Palette[] DEFAULT_COLORS = {
+        WHITE, ORANGE, MAGENTA, LIGHT_BLUE, YELLOW, LIME, PINK, GRAY,
+        LIGHT_GRAY, CYAN, PURPLE, BLUE, BROWN, GREEN, RED, BLACK
+    };
 
+    // 当前调色板，需在颜色查找表初始化之前配置
+    private static volatile Palette[] colors = DEFAULT_COLORS;
+
+    private final String name;
     private final Material blockType;
     private final int r, g, b;
 
-    Palette(Material blockType, int r, int g, int b) {
+    Palette(String name, Material blockType, int r, int g, int b) {
+        this.name = name;
         this.blockType = blockType;
         this.r = r;
         this.g = g;
         this.b = b;
     }
 
+    public String name() {
+        return name;
+    }
+
     public Material getBlockType() {
         return blockType;
     }
@@ -50,21 +80,112 @@ public enum Palette {
         return b;
     }
 
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * 解析配置文件中的调色板，每项为 "方块类型 #RRGGBB"
+     *
+     * @param entries 调色板项，为空时使用默认的 16 种混凝土
+     * @throws IllegalArgumentException 某一项无效、方块重复或超过 256 种
+     */
+    public static Palette[] parse(List<String> entries) {
+        if (entries.isEmpty()) {
+            return DEFAULT_COLORS.clone();
+        }
+        if (entries.size() > MAX_COLORS) {
+            throw new IllegalArgumentException("调色板最多 " + MAX_COLORS + " 种方块: " + entries.size());
+        }
+
+        List<Palette> parsed = new ArrayList<>(entries.size());
+        Set<Material> seen = new HashSet<>();
+        for (String entry : entries) {
+            String[] parts = entry.trim().split("\\s+");
+            if (parts.length != 2 || !parts[1].matches("#[0-9a-fA-F]{6}")) {
+                throw new IllegalArgumentException("无效的调色板项（应为 \"方块类型 #RRGGBB\"）: " + entry);
+            }
+            Material material = Material.matchMaterial(parts[0]);
+            if (material == null || !material.isBlock()) {
+                throw new IllegalArgumentException("未知的方块类型: " + parts[0]);
+            }
+            if (!seen.add(material)) {
+                throw new IllegalArgumentException("调色板中的方块重复: " + material);
+            }
+            int rgb = Integer.parseInt(parts[1].substring(1), 16);
+            parsed.add(new Palette(material.name(), material, rgb >> 16 & 0xFF, rgb >> 8 & 0xFF, rgb & 0xFF));
+        }
+        return parsed.toArray(new Palette[0]);
+    }
+
+    /**
+     * 设置当前调色板，需在 {@link ColorQuantizer#initialize()} 之前调用
+     * 修改调色板后，之前处理的视频需要重新处理
+     */
+    public static void configure(Palette[] palette) {
+        if (palette.length == 0 || palette.length > MAX_COLORS) {
+            throw new IllegalArgumentException("调色板需要 1 到 " + MAX_COLORS + " 种方块: " + palette.length);
+        }
+        colors = palette.clone();
+    }
+
     /**
      * 获取所有颜色
      */
     public static Palette[] getAllColors() {
-        return values();
+        return colors.clone();
+    }
+
+    /**
+     * 获取颜色数量
+     */
+    public static int size() {
+        return colors.length;
+    }
+
+    /**
+     * 获取当前调色板的标识
+     * 由每种颜色的方块类型和 RGB 值按序号计算，写入帧数据文件头，播放前与当前调色板比较
+     */
+    public static long getHash() {
+        return hash(colors);
+    }
+
+    /**
+     * 获取默认的 16 种混凝土的标识（旧版本帧数据文件没有记录调色板，视为使用默认调色板）
+     */
+    public static long getDefaultHash() {
+        return hash(DEFAULT_COLORS);
+    }
+
+    private static long hash(Palette[] palette) {
+        StringBuilder key = new StringBuilder();
+        for (Palette color : palette) {
+            key.append(color.blockType.name()).append(',').append(color.r).append(',').append(color.g).append(',')
+                .append(color.b).append(';');
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = hash << 8 | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
      * 根据索引获取颜色
      */
     public static Palette getByIndex(int index) {
-        Palette[] colors = getAllColors();
-        if (index >= 0 && index < colors.length) {
-            return colors[index];
+        Palette[] current = colors;
+        if (index >= 0 && index < current.length) {
+            return current[index];
         }
-        return WHITE; // 默认返回白色
+        return current[0]; // 默认返回第一种颜色
     }
-}
\ No newline at end of file
+}
@@ -2,24 +2,31 @@ package com.videoplayermc;
 
 import org.bukkit.Location;
 import org.bukkit.command.Command;
-import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
 import org.bukkit.entity.Player;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * 播放预处理视频命令处理器
- * 命令格式: /playfile <视频名称> <x> <y> <z>
+ * 命令格式: /playfile <视频名称> <x> <y> <z> [屏幕名称]
+ * 不同名称的屏幕可以同时播放，播放同一视频的屏幕共享解码
+ * 帧数据文件和名称补全都从视频目录中查找
  */
-public class PlayFileCommand implements CommandExecutor {
+public class PlayFileCommand implements TabExecutor {
 
     private final VideoPlayerMC plugin;
     private final VideoManager videoManager;
+    private final VideoCatalog catalog;
 
-    public PlayFileCommand(VideoPlayerMC plugin, VideoManager videoManager) {
+    public PlayFileCommand(VideoPlayerMC plugin, VideoManager videoManager, VideoCatalog catalog) {
         this.plugin = plugin;
         this.videoManager = videoManager;
+        this.catalog = catalog;
     }
 
     @Override
@@ -31,8 +38,8 @@ public class PlayFileCommand implements CommandExecutor {
         }
 
         // 检查参数数量
-        if (args.length != 4) {
-            sender.sendMessage("§c用法: /playfile <视频名称> <x> <y> <z>");
+        if (args.length != 4 && args.length != 5) {
+            sender.sendMessage("§c用法: /playfile <视频名称> <x> <y> <z> [屏幕名称]");
             return true;
         }
 
@@ -40,6 +47,7 @@ public class PlayFileCommand implements CommandExecutor {
         String xStr = args[1];
         String yStr = args[2];
         String zStr = args[3];
+        String screenName = args.length > 4 ? args[4] : VideoManager.DEFAULT_SCREEN;
 
         // 解析坐标
         int x, y, z;
@@ -59,18 +67,26 @@ public class PlayFileCommand implements CommandExecutor {
             return true;
         }
 
-        // 查找对应的帧图片目录
+        // 优先查找帧数据文件，其次查找帧图片目录
+        VideoCatalog.Entry entry = catalog.get(videoName);
         File frameDir = new File(processedDir, videoName);
-        if (!frameDir.exists() || !frameDir.isDirectory()) {
+        if (entry == null && !frameDir.isDirectory()) {
             sender.sendMessage("§c预处理视频不存在: " + videoName);
             sender.sendMessage("§7请先使用 /processvideo 命令处理视频");
             return true;
         }
 
-        // 如果有正在播放的视频，先停止
-        if (videoManager.isPlaying()) {
-            sender.sendMessage("§e正在停止之前的播放...");
-            videoManager.stop();
+        // 调色板修改后，之前处理的视频中的颜色序号对应的方块已经不同
+        if (entry != null && entry.getPaletteHash() != Palette.getHash()) {
+            sender.sendMessage("§c视频 " + videoName + " 处理时使用的调色板与当前配置（palette.blocks）不同，无法播放");
+            sender.sendMessage("§7请使用 /processvideo 重新处理视频");
+            return true;
+        }
+
+        // 如果该屏幕有正在播放的视频，先停止
+        Screen screen = videoManager.getScreen(screenName);
+        if (screen != null && screen.isPlaying()) {
+            sender.sendMessage("§e正在停止屏幕 " + screenName + " 之前的播放...");
         }
 
         // 开始播放
@@ -87,10 +103,19 @@ public class PlayFileCommand implements CommandExecutor {
                 return true;
             }
 
-            videoManager.playFromImages(frameDir, location);
+            if (entry != null) {
+                videoManager.playFromFile(screenName, entry, location);
+            } else {
+                videoManager.playFromImages(screenName, frameDir, location);
+            }
+            VideoStream stream = videoManager.getScreen(screenName).getStream();
             sender.sendMessage("§a开始播放视频: " + videoName);
+            sender.sendMessage("§7屏幕: " + screenName);
             sender.sendMessage("§7位置: (" + x + ", " + y + ", " + z + ")");
-            sender.sendMessage("§7总帧数: " + videoManager.getTotalFrames());
+            sender.sendMessage("§7总帧数: " + stream.getTotalFrames());
+            if (stream.getScreenCount() > 1) {
+                sender.sendMessage("§7与其他 " + (stream.getScreenCount() - 1) + " 个屏幕同步播放");
+            }
 
         } catch (Exception e) {
             sender.sendMessage("§c播放视频失败: " + e.getMessage());
@@ -100,4 +125,35 @@ public class PlayFileCommand implements CommandExecutor {
 
         return true;
     }
+
+    /**
+     * 补全视频名称和屏幕名称，只读取视频目录
+     */
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        if (!sender.hasPermission("videoplayermc.play")) {
+            return Collections.emptyList();
+        }
+
+        List<String> candidates;
+        if (args.length == 1) {
+            candidates = catalog.getNames();
+        } else if (args.length == 5) {
+            candidates = new ArrayList<>();
+            for (Screen screen : videoManager.getScreens()) {
+                candidates.add(screen.getName());
+            }
+        } else {
+            return Collections.emptyList();
+        }
+
+        String prefix = args[args.length - 1].toLowerCase();
+        List<String> matches = new ArrayList<>();
+        for (String candidate : candidates) {
+            if (candidate.toLowerCase().startsWith(prefix)) {
+                matches.add(candidate);
+            }
+        }
+        return matches;
+    }
 }
\ No newline at end of file
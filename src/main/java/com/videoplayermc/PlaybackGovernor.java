@@ -0,0 +1,213 @@
+package com.videoplayermc;
+
+import com.destroystokyo.paper.event.server.ServerTickEndEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+import java.util.logging.Logger;
+
+/**
+ * 播放调节器
+ * 根据服务器最近的 tick 耗时（MSPT）逐级降低播放负载，避免视频播放拖垮 TPS
+ * 负载升高时直接进入对应的等级；负载下降后需要低于进入阈值减去回差，
+ * 并持续一段时间，才逐级恢复，避免在阈值附近反复切换
+ * tick 耗时由 {@link ServerTickEndEvent} 记录到最近 {@value #SAMPLE_TICKS} 个 tick 的环形数组，
+ * 尚未收到事件时使用服务器的平均 tick 耗时
+ */
+public class PlaybackGovernor implements Listener {
+
+    /**
+     * 调节等级
+     */
+    public enum Level {
+        // 正常播放
+        NORMAL("正常", 1, 1.0),
+        // 降低画面更新频率（每 2 tick 推进一次），写入预算不变
+        REDUCED("降低更新频率", 2, 1.0),
+        // 降低更新频率，并只使用部分写入预算，未写入的方块顺延
+        PARTIAL("部分更新", 2, 0.25),
+        // 暂停播放和方块写入
+        PAUSED("暂停", 0, 0.0);
+
+        private final String displayName;
+        private final int tickInterval;
+        private final double budgetFraction;
+
+        Level(String displayName, int tickInterval, double budgetFraction) {
+            this.displayName = displayName;
+            this.tickInterval = tickInterval;
+            this.budgetFraction = budgetFraction;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * 视频流每隔多少 tick 推进一次，0 表示不推进
+         */
+        public int getTickInterval() {
+            return tickInterval;
+        }
+
+        /**
+         * 可使用的方块写入预算比例
+         */
+        public double getBudgetFraction() {
+            return budgetFraction;
+        }
+    }
+
+    // 计算 MSPT 时使用的最近 tick 数
+    private static final int SAMPLE_TICKS = 20;
+
+    private final Logger logger;
+    private final boolean enabled;
+
+    // 进入 REDUCED、PARTIAL、PAUSED 的 MSPT 阈值（毫秒）
+    private final double[] thresholds;
+    private final double hysteresis;
+    private final int recoverTicks;
+
+    // 最近的 tick 耗时（毫秒），按收到事件的顺序循环写入
+    private final double[] tickDurations = new double[SAMPLE_TICKS];
+    private int sampleCount;
+    private int sampleCursor;
+
+    private Level level = Level.NORMAL;
+    private int belowTicks;
+    private double lastMspt;
+
+    /**
+     * @param logger       日志记录器
+     * @param enabled      是否启用，未启用时始终为 NORMAL
+     * @param reducedMspt  进入降低更新频率的 MSPT
+     * @param partialMspt  进入部分更新的 MSPT
+     * @param pausedMspt   进入暂停的 MSPT
+     * @param hysteresis   恢复时需要低于进入阈值的幅度（毫秒）
+     * @param recoverTicks 恢复到上一等级前需要持续的 tick 数
+     */
+    public PlaybackGovernor(Logger logger, boolean enabled, double reducedMspt, double partialMspt, double pausedMspt,
+                            double hysteresis, int recoverTicks) {
+        if (!(reducedMspt <= partialMspt && partialMspt <= pausedMspt)) {
+            throw new IllegalArgumentException("调节阈值需要递增: " + reducedMspt + ", " + partialMspt + ", " + pausedMspt);
+        }
+        this.logger = logger;
+        this.enabled = enabled;
+        this.thresholds = new double[]{reducedMspt, partialMspt, pausedMspt};
+        this.hysteresis = Math.max(0, hysteresis);
+        this.recoverTicks = Math.max(1, recoverTicks);
+    }
+
+    /**
+     * 读取服务器最近的 MSPT 并更新等级（每 tick 由主线程调用）
+     *
+     * @return 当前等级
+     */
+    public Level update() {
+        if (!enabled) {
+            return Level.NORMAL;
+        }
+        return update(readMspt());
+    }
+
+    /**
+     * 按给定的 MSPT 更新等级
+     *
+     * @param mspt 最近的平均 tick 耗时（毫秒）
+     * @return 当前等级
+     */
+    Level update(double mspt) {
+        lastMspt = mspt;
+
+        // 负载升高：直接进入对应的等级
+        Level target = Level.NORMAL;
+        for (int i = thresholds.length - 1; i >= 0; i--) {
+            if (mspt >= thresholds[i]) {
+                target = Level.values()[i + 1];
+                break;
+            }
+        }
+        if (target.ordinal() > level.ordinal()) {
+            changeLevel(target, mspt);
+            belowTicks = 0;
+            return level;
+        }
+
+        // 负载下降：低于当前等级的阈值减去回差并持续一段时间后，恢复一级
+        if (level != Level.NORMAL && mspt < thresholds[level.ordinal() - 1] - hysteresis) {
+            if (++belowTicks >= recoverTicks) {
+                changeLevel(Level.values()[level.ordinal() - 1], mspt);
+                belowTicks = 0;
+            }
+        } else {
+            belowTicks = 0;
+        }
+        return level;
+    }
+
+    private void changeLevel(Level next, double mspt) {
+        String message = String.format("播放调节: %s -> %s（MSPT %.1fms）", level.getDisplayName(), next.getDisplayName(), mspt);
+        if (next.ordinal() > level.ordinal()) {
+            logger.warning(message);
+        } else {
+            logger.info(message);
+        }
+        level = next;
+    }
+
+    /**
+     * 记录一个 tick 的耗时
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onTickEnd(ServerTickEndEvent event) {
+        recordTick(event.getTickDuration());
+    }
+
+    /**
+     * 记录一个 tick 的耗时（毫秒）
+     */
+    void recordTick(double millis) {
+        tickDurations[sampleCursor] = millis;
+        sampleCursor = (sampleCursor + 1) % SAMPLE_TICKS;
+        sampleCount = Math.min(sampleCount + 1, SAMPLE_TICKS);
+    }
+
+    /**
+     * 读取最近 {@value #SAMPLE_TICKS} 个 tick 的平均耗时（毫秒）
+     * 只使用已记录的 tick，尚未记录时使用服务器的平均 tick 耗时
+     */
+    private double readMspt() {
+        if (sampleCount == 0) {
+            return Bukkit.getAverageTickTime();
+        }
+        double total = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            total += tickDurations[i];
+        }
+        return total / sampleCount;
+    }
+
+    /**
+     * 获取当前等级
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * 获取最近一次读取的 MSPT
+     */
+    public double getLastMspt() {
+        return lastMspt;
+    }
+
+    /**
+     * 检查是否启用
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
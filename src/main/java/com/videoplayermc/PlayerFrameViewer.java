@@ -0,0 +1,52 @@
+package com.videoplayermc;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 玩家观看者
+ * 假方块更新通过 Paper 的多方块更新发送，服务器端的方块不变
+ */
+public class PlayerFrameViewer implements FrameViewer {
+
+    private final Player player;
+
+    public PlayerFrameViewer(Player player) {
+        this.player = player;
+    }
+
+    @Override
+    public UUID getId() {
+        return player.getUniqueId();
+    }
+
+    @Override
+    public boolean isOnline() {
+        return player.isOnline();
+    }
+
+    @Override
+    public World getWorld() {
+        return player.getWorld();
+    }
+
+    @Override
+    public Location getLocation() {
+        return player.getLocation();
+    }
+
+    @Override
+    public int getViewDistance() {
+        return player.getViewDistance();
+    }
+
+    @Override
+    public void sendBlockChanges(Map<Location, BlockData> changes) {
+        player.sendMultiBlockChange(changes);
+    }
+}
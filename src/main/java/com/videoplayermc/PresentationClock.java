@@ -0,0 +1,90 @@
+package com.videoplayermc;
+
+/**
+ * 播放时钟
+ * 根据实际经过的时间（而不是 tick 数）计算当前应显示的帧，
+ * 服务器 TPS 下降时视频仍按原速播放，落后的帧会被跳过
+ */
+public class PresentationClock {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final int fps;
+    private long startNanos;
+
+    // 暂停时记录暂停时刻，恢复时将起点后移
+    private boolean paused;
+    private long pausedAt;
+
+    public PresentationClock(int fps) {
+        this.fps = fps;
+    }
+
+    /**
+     * 从第 0 帧开始计时
+     *
+     * @param now 当前时间（System.nanoTime）
+     */
+    public void start(long now) {
+        this.startNanos = now;
+        this.paused = false;
+    }
+
+    /**
+     * 跳转到指定帧，之后从该帧继续计时
+     *
+     * @param frameIndex 帧索引
+     * @param now        当前时间（System.nanoTime）
+     */
+    public void seek(int frameIndex, long now) {
+        long offset = frameIndex * NANOS_PER_SECOND / fps;
+        this.startNanos = now - offset;
+        if (paused) {
+            this.pausedAt = now;
+        }
+    }
+
+    /**
+     * 暂停计时
+     */
+    public void pause(long now) {
+        if (!paused) {
+            paused = true;
+            pausedAt = now;
+        }
+    }
+
+    /**
+     * 恢复计时
+     */
+    public void resume(long now) {
+        if (paused) {
+            paused = false;
+            startNanos += now - pausedAt;
+        }
+    }
+
+    /**
+     * 检查是否已暂停
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * 获取指定时间应显示的帧索引
+     *
+     * @param now 当前时间（System.nanoTime）
+     */
+    public int frameAt(long now) {
+        long time = paused ? pausedAt : now;
+        return (int) ((time - startNanos) * fps / NANOS_PER_SECOND);
+    }
+
+    /**
+     * 获取帧率
+     */
+    public int getFps() {
+        return fps;
+    }
+}
@@ -8,16 +8,23 @@ import java.io.File;
 
 /**
  * 预处理视频命令处理器
- * 命令格式: /processvideo <视频文件名> [输出名称]
+ * 命令格式: /processvideo <视频文件名> [输出名称] [宽x高]
  */
 public class ProcessVideoCommand implements CommandExecutor {
 
     private final VideoPlayerMC plugin;
-    private final VideoProcessor videoProcessor;
-
-    public ProcessVideoCommand(VideoPlayerMC plugin, VideoProcessor videoProcessor) {
+    private final ProcessingScheduler scheduler;
+    private final Resolution defaultResolution;
+
+    /**
+     * @param plugin            插件实例
+     * @param scheduler         预处理任务调度器
+     * @param defaultResolution 未指定分辨率时使用的分辨率
+     */
+    public ProcessVideoCommand(VideoPlayerMC plugin, ProcessingScheduler scheduler, Resolution defaultResolution) {
         this.plugin = plugin;
-        this.videoProcessor = videoProcessor;
+        this.scheduler = scheduler;
+        this.defaultResolution = defaultResolution;
     }
 
     @Override
@@ -29,11 +36,22 @@ public class ProcessVideoCommand implements CommandExecutor {
         }
 
         // 检查参数数量
-        if (args.length < 1) {
-            sender.sendMessage("§c用法: /processvideo <视频文件名> [输出名称]");
+        if (args.length < 1 || args.length > 3) {
+            sender.sendMessage("§c用法: /processvideo <视频文件名> [输出名称] [宽x高]");
             return true;
         }
 
+        // 解析分辨率
+        Resolution resolution = defaultResolution;
+        if (args.length > 2) {
+            try {
+                resolution = Resolution.parse(args[2]);
+            } catch (IllegalArgumentException e) {
+                sender.sendMessage("§c" + e.getMessage());
+                return true;
+            }
+        }
+
         String videoFileName = args[0];
         String outputName = args.length > 1 ? args[1] : videoFileName.substring(0, videoFileName.lastIndexOf('.'));
 
@@ -56,42 +74,15 @@ public class ProcessVideoCommand implements CommandExecutor {
             processedDir.mkdirs();
         }
 
-        sender.sendMessage("§e正在处理视频: " + videoFileName);
-        sender.sendMessage("§7这可能需要一些时间，请稍候...");
-
-        // 异步处理视频
-        new Thread(() -> {
-            try {
-                long startTime = System.currentTimeMillis();
-
-                // 使用进度监听器
-                int frameCount = videoProcessor.saveFramesAsImages(
-                    videoFile.getAbsolutePath(),
-                    processedDir,
-                    outputName,
-                    (count, height) -> {
-                        if (count % 10 == 0) { // 每10帧显示一次进度
-                            sender.sendMessage("§7已处理 " + count + " 帧...");
-                        }
-                    }
-                );
-
-                long endTime = System.currentTimeMillis();
-                long duration = (endTime - startTime) / 1000;
-
-                plugin.getLogger().info("视频预处理完成: " + outputName + " (共 " + frameCount + " 帧, 耗时: " + duration + "秒)");
-                sender.sendMessage("§a视频预处理完成！");
-                sender.sendMessage("§7输出目录: " + outputName + "/");
-                sender.sendMessage("§7帧数: " + frameCount);
-                sender.sendMessage("§7耗时: " + duration + "秒");
-                sender.sendMessage("§7使用命令播放: /playfile " + outputName + " <x> <y> <z>");
-
-            } catch (Exception e) {
-                plugin.getLogger().severe("视频预处理失败: " + e.getMessage());
-                sender.sendMessage("§c视频预处理失败: " + e.getMessage());
-                e.printStackTrace();
-            }
-        }, "VideoProcessor-Thread").start();
+        // 加入处理队列，由调度器的工作线程处理
+        File outputFile = new File(processedDir, outputName + ".vmfr");
+        try {
+            ProcessingJob job = scheduler.submit(sender, videoFile, outputFile, outputName, resolution);
+            sender.sendMessage("§e视频已加入处理队列: " + videoFileName + "（" + resolution + "，任务 #" + job.getId() + "）");
+            sender.sendMessage("§7这可能需要一些时间，使用 /videojobs 查看进度");
+        } catch (IllegalStateException e) {
+            sender.sendMessage("§c" + e.getMessage());
+        }
 
         return true;
     }
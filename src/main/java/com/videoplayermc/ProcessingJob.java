@@ -0,0 +1,204 @@
+package com.videoplayermc;
+
+import org.bukkit.command.CommandSender;
+
+import java.io.File;
+import java.util.concurrent.Future;
+
+/**
+ * 视频预处理任务
+ * 由 {@link ProcessingScheduler} 排队和执行，状态和进度可从任意线程读取
+ */
+public class ProcessingJob {
+
+    /**
+     * 任务类型
+     */
+    public enum Kind {
+        // 预处理视频文件
+        VIDEO("预处理"),
+        // 导入帧图片目录
+        FRAMES("导入");
+
+        private final String displayName;
+
+        Kind(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    /**
+     * 任务状态
+     */
+    public enum State {
+        QUEUED("排队中"),
+        RUNNING("处理中"),
+        COMPLETED("已完成"),
+        FAILED("失败"),
+        CANCELLED("已取消");
+
+        private final String displayName;
+
+        State(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * 检查任务是否已结束
+         */
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final int id;
+    private final Kind kind;
+    private final String name;
+    private final File videoFile;
+    private final File outputFile;
+    private final Resolution resolution;
+    private final CommandSender sender;
+
+    private volatile State state = State.QUEUED;
+    private volatile int processedFrames;
+    private volatile long startTime;
+    private volatile long endTime;
+    private volatile String error;
+    private Future<?> future;
+
+    ProcessingJob(int id, Kind kind, String name, File videoFile, File outputFile, Resolution resolution,
+                  CommandSender sender) {
+        this.id = id;
+        this.kind = kind;
+        this.name = name;
+        this.videoFile = videoFile;
+        this.outputFile = outputFile;
+        this.resolution = resolution;
+        this.sender = sender;
+    }
+
+    /**
+     * 开始处理，任务已取消时返回 false
+     */
+    synchronized boolean start() {
+        if (state != State.QUEUED) {
+            return false;
+        }
+        state = State.RUNNING;
+        startTime = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * 结束任务，已取消的任务保持取消状态
+     */
+    synchronized void finish(State finalState, String error) {
+        if (state == State.CANCELLED) {
+            return;
+        }
+        this.state = finalState;
+        this.error = error;
+        this.endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 取消任务，排队中的任务不再执行，处理中的任务被中断
+     *
+     * @return 如果任务尚未结束并已取消
+     */
+    synchronized boolean cancel() {
+        if (state.isFinished()) {
+            return false;
+        }
+        state = State.CANCELLED;
+        endTime = System.currentTimeMillis();
+        if (future != null) {
+            future.cancel(true);
+        }
+        return true;
+    }
+
+    synchronized void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    void setProcessedFrames(int processedFrames) {
+        this.processedFrames = processedFrames;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * 获取任务类型
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 获取输入文件：视频文件，导入任务为帧图片目录
+     */
+    public File getVideoFile() {
+        return videoFile;
+    }
+
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * 获取输出分辨率
+     */
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+    /**
+     * 获取提交任务的命令发送者
+     */
+    public CommandSender getSender() {
+        return sender;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 获取已处理的帧数
+     */
+    public int getProcessedFrames() {
+        return processedFrames;
+    }
+
+    /**
+     * 获取已运行的时间（毫秒），尚未开始时返回 0
+     */
+    public long getElapsedMillis() {
+        if (startTime == 0) {
+            return 0;
+        }
+        return (state.isFinished() ? endTime : System.currentTimeMillis()) - startTime;
+    }
+
+    /**
+     * 获取失败原因，没有失败时返回 null
+     */
+    public String getError() {
+        return error;
+    }
+}
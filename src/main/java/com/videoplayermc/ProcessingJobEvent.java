@@ -0,0 +1,38 @@
+package com.videoplayermc;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR 事件：一个视频预处理任务
+ * 持续时间为任务从开始处理到结束的时间
+ */
+@Name("com.videoplayermc.ProcessingJob")
+@Label("Video Processing Job")
+@Category({"VideoPlayerMC", "Processing"})
+@Description("A queued video was decoded, quantized and written to a frame data file")
+@StackTrace(false)
+class ProcessingJobEvent extends Event {
+
+    @Label("Job Id")
+    int jobId;
+
+    @Label("Name")
+    String name;
+
+    @Label("Resolution")
+    String resolution;
+
+    @Label("Variants")
+    int variants;
+
+    @Label("Frames")
+    int frames;
+
+    @Label("State")
+    String state;
+}
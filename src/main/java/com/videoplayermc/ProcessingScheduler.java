@@ -0,0 +1,354 @@
+package com.videoplayermc;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 视频预处理任务调度器
+ * 任务排队后由固定数量的低优先级线程执行（优先级只是提示），同时处理的任务数和排队数都有上限，
+ * 批量提交时不会占满服务器的 CPU；导入帧图片目录（/importframes）也作为任务排队
+ * 进度和结果消息在主线程中发送给提交者
+ */
+public class ProcessingScheduler {
+
+    // 每处理多少帧报告一次进度
+    private static final int PROGRESS_INTERVAL = 100;
+
+    // 保留的已结束任务数量，供状态查询
+    private static final int FINISHED_HISTORY = 10;
+
+    private final VideoPlayerMC plugin;
+    private final VideoProcessor videoProcessor;
+    private final FrameImporter frameImporter;
+    private final int maxQueued;
+    private final List<Double> variantScales;
+    private final ThreadPoolExecutor executor;
+    private final Map<Integer, ProcessingJob> jobs = new LinkedHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    /**
+     * @param plugin         插件实例
+     * @param videoProcessor 视频处理器（不保存每次处理的状态，可被多个任务同时使用）
+     * @param maxJobs        同时处理的任务数
+     * @param maxQueued      最多排队的任务数
+     * @param variantScales  低分辨率版本相对输出分辨率的缩放比例（可为空）
+     */
+    public ProcessingScheduler(VideoPlayerMC plugin, VideoProcessor videoProcessor, int maxJobs, int maxQueued,
+                               List<Double> variantScales) {
+        this.plugin = plugin;
+        this.videoProcessor = videoProcessor;
+        // 导入与预处理使用相同数量的工作线程
+        this.frameImporter = new FrameImporter(videoProcessor.getWorkers());
+        this.maxQueued = Math.max(0, maxQueued);
+        this.variantScales = new ArrayList<>(variantScales);
+
+        int threads = Math.max(1, maxJobs);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "VideoProcessor-Job-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * 提交预处理任务
+     *
+     * @param sender     提交者，进度和结果发送给它
+     * @param videoFile  视频文件
+     * @param outputFile 输出的帧数据文件
+     * @param name       输出名称
+     * @param resolution 输出分辨率
+     * @return 提交的任务
+     * @throws IllegalStateException 如果排队已满或同一输出已有未结束的任务
+     */
+    public synchronized ProcessingJob submit(CommandSender sender, File videoFile, File outputFile, String name,
+                                             Resolution resolution) {
+        return submit(ProcessingJob.Kind.VIDEO, sender, videoFile, outputFile, name, resolution);
+    }
+
+    /**
+     * 提交导入帧图片目录的任务
+     *
+     * @param sender     提交者，进度和结果发送给它
+     * @param frameDir   帧图片目录
+     * @param outputFile 输出的帧数据文件
+     * @param name       输出名称
+     * @return 提交的任务
+     * @throws IllegalStateException 如果排队已满或同一输出已有未结束的任务
+     */
+    public synchronized ProcessingJob submitImport(CommandSender sender, File frameDir, File outputFile, String name) {
+        return submit(ProcessingJob.Kind.FRAMES, sender, frameDir, outputFile, name,
+            new Resolution(VideoProcessor.getTargetWidth(), VideoProcessor.getTargetHeight()));
+    }
+
+    private ProcessingJob submit(ProcessingJob.Kind kind, CommandSender sender, File inputFile, File outputFile,
+                                 String name, Resolution resolution) {
+        int pending = 0;
+        for (ProcessingJob job : jobs.values()) {
+            if (job.getState().isFinished()) {
+                continue;
+            }
+            if (job.getOutputFile().equals(outputFile)) {
+                throw new IllegalStateException("已有处理 " + name + " 的任务: #" + job.getId());
+            }
+            pending++;
+        }
+        if (pending >= executor.getMaximumPoolSize() + maxQueued) {
+            throw new IllegalStateException("排队的任务已满（" + maxQueued + " 个）");
+        }
+
+        ProcessingJob job = new ProcessingJob(nextId.getAndIncrement(), kind, name, inputFile, outputFile, resolution, sender);
+        jobs.put(job.getId(), job);
+        pruneFinished();
+        job.setFuture(executor.submit(() -> {
+            if (kind == ProcessingJob.Kind.FRAMES) {
+                runImport(job);
+            } else {
+                run(job);
+            }
+        }));
+        return job;
+    }
+
+    /**
+     * 取消任务
+     *
+     * @param id 任务编号
+     * @return 如果任务存在且尚未结束
+     */
+    public synchronized boolean cancel(int id) {
+        ProcessingJob job = jobs.get(id);
+        return job != null && job.cancel();
+    }
+
+    /**
+     * 获取未结束的任务和最近结束的任务，按提交顺序排列
+     */
+    public synchronized List<ProcessingJob> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    /**
+     * 获取排队中的任务数
+     */
+    public synchronized int getQueuedCount() {
+        int count = 0;
+        for (ProcessingJob job : jobs.values()) {
+            if (job.getState() == ProcessingJob.State.QUEUED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 取消所有任务并停止工作线程
+     */
+    public synchronized void shutdown() {
+        for (ProcessingJob job : jobs.values()) {
+            job.cancel();
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * 执行任务（工作线程）
+     */
+    private void run(ProcessingJob job) {
+        if (!job.start()) {
+            return;
+        }
+
+        String name = job.getName();
+        CommandSender sender = job.getSender();
+        send(sender, "§e开始处理视频 #" + job.getId() + ": " + job.getVideoFile().getName());
+
+        Resolution resolution = job.getResolution();
+        List<Resolution> variants = resolution.ladder(variantScales);
+        ProcessingJobEvent event = new ProcessingJobEvent();
+        event.begin();
+
+        try {
+            ChurnCounter churn = new ChurnCounter(resolution.getWidth(), resolution.getHeight());
+            int frameCount = videoProcessor.processVideo(
+                job.getVideoFile().getAbsolutePath(),
+                job.getOutputFile(),
+                resolution,
+                variants,
+                churn,
+                (count, height) -> {
+                    job.setProcessedFrames(count);
+                    if (count % PROGRESS_INTERVAL == 0) {
+                        send(sender, "§7#" + job.getId() + " " + name + ": 已处理 " + count + " 帧...");
+                    }
+                }
+            );
+            job.setProcessedFrames(frameCount);
+
+            // 更新视频目录，之后的 /playfile 和名称补全可以直接使用
+            VideoCatalog catalog = plugin.getCatalog();
+            catalog.update(job.getOutputFile());
+            for (Resolution variant : variants) {
+                catalog.update(VideoProcessor.variantFile(job.getOutputFile(), variant));
+            }
+            job.finish(ProcessingJob.State.COMPLETED, null);
+
+            long duration = job.getElapsedMillis() / 1000;
+            plugin.getLogger().info("视频预处理完成: " + name + " (共 " + frameCount + " 帧, 耗时: " + duration + "秒)");
+            plugin.getLogger().info(String.format("方块变化: 抖动 平均 %.1f / 最多 %d，不抖动 平均 %.1f / 最多 %d（每帧像素）",
+                churn.getAverageDithered(), churn.getMaxDithered(), churn.getAveragePlain(), churn.getMaxPlain()));
+            if (videoProcessor.isStabilizing()) {
+                plugin.getLogger().info(String.format("稳定编码: 节省 %d 次方块写入（%.1f%%）",
+                    churn.getSavedWrites(), churn.getSavedRatio() * 100));
+            }
+
+            List<String> messages = new ArrayList<>();
+            messages.add("§a视频预处理完成！（#" + job.getId() + "）");
+            messages.add("§7输出文件: " + name + ".vmfr");
+            messages.add("§7分辨率: " + resolution + (variants.isEmpty() ? "" : "（低分辨率版本: " + joinResolutions(variants) + "）"));
+            messages.add("§7帧数: " + frameCount);
+            messages.add("§7耗时: " + duration + "秒");
+            if (videoProcessor.isDithering()) {
+                messages.add(String.format("§7方块变化: 平均每帧 %.0f 个（不抖动 %.0f 个），最多 %d 个（不抖动 %d 个）",
+                    churn.getAverageDithered(), churn.getAveragePlain(), churn.getMaxDithered(), churn.getMaxPlain()));
+            } else {
+                messages.add(String.format("§7方块变化: 平均每帧 %.0f 个，最多 %d 个",
+                    churn.getAveragePlain(), churn.getMaxPlain()));
+            }
+            if (videoProcessor.isStabilizing()) {
+                messages.add(String.format("§7稳定编码: 节省 %d 次方块写入（%.0f%%）",
+                    churn.getSavedWrites(), churn.getSavedRatio() * 100));
+            }
+            messages.add("§7使用命令播放: /playfile " + name + " <x> <y> <z>");
+            send(sender, messages.toArray(new String[0]));
+
+        } catch (Exception e) {
+            if (e instanceof InterruptedException || job.getState() == ProcessingJob.State.CANCELLED) {
+                // 任务被取消，解码循环或文件读写被中断
+                plugin.getLogger().info("视频预处理已取消: " + name);
+                send(sender, "§e视频预处理已取消: #" + job.getId() + " " + name);
+                return;
+            }
+            job.finish(ProcessingJob.State.FAILED, e.getMessage());
+            plugin.getLogger().severe("视频预处理失败: " + e.getMessage());
+            send(sender, "§c视频预处理失败: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.jobId = job.getId();
+                event.name = name;
+                event.resolution = resolution.toString();
+                event.variants = variants.size();
+                event.frames = job.getProcessedFrames();
+                event.state = job.getState().name();
+                event.commit();
+            }
+
+            // 清除中断标记，线程继续执行下一个任务
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * 执行导入任务（工作线程）
+     */
+    private void runImport(ProcessingJob job) {
+        if (!job.start()) {
+            return;
+        }
+
+        String name = job.getName();
+        CommandSender sender = job.getSender();
+        send(sender, "§e开始导入帧图片 #" + job.getId() + ": " + name);
+
+        try {
+            int frameCount = frameImporter.importFrames(job.getVideoFile(), job.getOutputFile(), (count, height) -> {
+                job.setProcessedFrames(count);
+                if (count % PROGRESS_INTERVAL == 0) {
+                    send(sender, "§7#" + job.getId() + " " + name + ": 已导入 " + count + " 帧...");
+                }
+            });
+            job.setProcessedFrames(frameCount);
+            plugin.getCatalog().update(job.getOutputFile());
+            job.finish(ProcessingJob.State.COMPLETED, null);
+
+            long duration = job.getElapsedMillis() / 1000;
+            plugin.getLogger().info("帧图片导入完成: " + name + " (共 " + frameCount + " 帧, 耗时: " + duration + "秒)");
+            send(sender, "§a导入完成: " + name + ".vmfr（#" + job.getId() + "，" + frameCount + " 帧, 耗时 " + duration + " 秒）");
+        } catch (Exception e) {
+            if (e instanceof InterruptedException || job.getState() == ProcessingJob.State.CANCELLED) {
+                plugin.getLogger().info("帧图片导入已取消: " + name);
+                send(sender, "§e帧图片导入已取消: #" + job.getId() + " " + name);
+                return;
+            }
+            job.finish(ProcessingJob.State.FAILED, e.getMessage());
+            plugin.getLogger().severe("帧图片导入失败: " + name + ": " + e.getMessage());
+            send(sender, "§c导入失败: " + name + ": " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            // 清除中断标记，线程继续执行下一个任务
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * 将分辨率列表连接为 "57x32, 28x16" 形式
+     */
+    private static String joinResolutions(List<Resolution> resolutions) {
+        StringBuilder builder = new StringBuilder();
+        for (Resolution resolution : resolutions) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(resolution);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 在主线程中发送消息
+     */
+    private void send(CommandSender sender, String... messages) {
+        if (!plugin.isEnabled()) {
+            return;
+        }
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            for (String message : messages) {
+                sender.sendMessage(message);
+            }
+        });
+    }
+
+    /**
+     * 只保留最近结束的若干任务
+     */
+    private void pruneFinished() {
+        int finished = 0;
+        for (ProcessingJob job : jobs.values()) {
+            if (job.getState().isFinished()) {
+                finished++;
+            }
+        }
+        Iterator<ProcessingJob> iterator = jobs.values().iterator();
+        while (finished > FINISHED_HISTORY && iterator.hasNext()) {
+            if (iterator.next().getState().isFinished()) {
+                iterator.remove();
+                finished--;
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.videoplayermc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 屏幕分辨率（方块数）
+ * 宽度为水平方向的方块数，高度为垂直方向的方块数
+ */
+public final class Resolution {
+
+    // 允许的最大宽度和高度（方块）
+    public static final int MAX_SIZE = 1024;
+
+    private final int width;
+    private final int height;
+
+    public Resolution(int width, int height) {
+        if (width < 1 || height < 1 || width > MAX_SIZE || height > MAX_SIZE) {
+            throw new IllegalArgumentException("分辨率超出范围（1 - " + MAX_SIZE + "）: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * 解析 "宽x高" 格式的分辨率，例如 114x64
+     *
+     * @throws IllegalArgumentException 如果格式无效或超出范围
+     */
+    public static Resolution parse(String value) {
+        int separator = value.toLowerCase().indexOf('x');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("无效的分辨率: " + value + "（格式: 宽x高）");
+        }
+        try {
+            return new Resolution(Integer.parseInt(value.substring(0, separator).trim()),
+                Integer.parseInt(value.substring(separator + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的分辨率: " + value + "（格式: 宽x高）");
+        }
+    }
+
+    /**
+     * 按比例缩小后的分辨率，宽高各自四舍五入且至少为 1
+     */
+    public Resolution scale(double factor) {
+        return new Resolution(Math.max(1, (int) Math.round(width * factor)),
+            Math.max(1, (int) Math.round(height * factor)));
+    }
+
+    /**
+     * 生成低分辨率版本的阶梯
+     * 只保留宽高都小于当前分辨率的版本，按从大到小排列，去除重复
+     *
+     * @param factors 缩放比例（0 - 1）
+     * @return 低分辨率版本，不包括当前分辨率
+     */
+    public List<Resolution> ladder(List<Double> factors) {
+        List<Resolution> ladder = new ArrayList<>();
+        for (double factor : factors) {
+            if (factor <= 0 || factor >= 1) {
+                continue;
+            }
+            Resolution variant = scale(factor);
+            if (variant.width < width && variant.height < height && !ladder.contains(variant)) {
+                ladder.add(variant);
+            }
+        }
+        ladder.sort((a, b) -> Integer.compare(b.getPixelCount(), a.getPixelCount()));
+        return ladder;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 获取像素（方块）数量
+     */
+    public int getPixelCount() {
+        return width * height;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Resolution)) {
+            return false;
+        }
+        Resolution other = (Resolution) o;
+        return width == other.width && height == other.height;
+    }
+
+    @Override
+    public int hashCode() {
+        return width * 31 + height;
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height;
+    }
+}
@@ -0,0 +1,370 @@
+package com.videoplayermc;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.Collection;
+
+/**
+ * 屏幕
+ * 一个有名称的播放区域，拥有自己的位置和帧输出（方块放置器或地图，包括上一帧状态）
+ * 多个屏幕播放同一视频时订阅同一个 {@link VideoStream}，帧只解码一次
+ * 启用观看者剔除时，视距内没有玩家的屏幕不放置帧，有玩家进入后从最新的帧重绘一次
+ */
+public class Screen {
+
+    /**
+     * 显示模式
+     */
+    public enum DisplayMode {
+        // 写入世界中的方块
+        WORLD("世界方块"),
+        // 只向附近的玩家发送假方块更新，不修改世界
+        PACKET("客户端"),
+        // 绘制到展示框中的地图上，每个方块位置显示 128x128 像素
+        MAP("地图");
+
+        private final String displayName;
+
+        DisplayMode(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private final String name;
+    private final DisplayMode displayMode;
+    private final boolean culling;
+    private FrameSink sink;
+    private VideoStream stream;
+
+    // 缩小屏幕后负责清除多余区域的旧输出
+    private FrameSink retiring;
+    private boolean removing;
+
+    // 视距内没有观看者，不放置帧；重新有观看者后需要重绘
+    private boolean culled;
+    private boolean repaint;
+
+    // 统计：放置的帧数、写入的方块数、放置帧（标记方块）和写入方块的耗时
+    private long framesPlaced;
+    private long blocksWritten;
+    private final LatencyHistogram placeLatency = new LatencyHistogram();
+    private final LatencyHistogram applyLatency = new LatencyHistogram();
+
+    public Screen(String name) {
+        this(name, DisplayMode.WORLD, false);
+    }
+
+    /**
+     * @param name        屏幕名称
+     * @param displayMode 显示模式
+     * @param culling     视距内没有观看者时是否停止放置帧
+     */
+    public Screen(String name, DisplayMode displayMode, boolean culling) {
+        this.name = name;
+        this.displayMode = displayMode;
+        this.culling = culling;
+    }
+
+    /**
+     * 在指定位置播放视频流
+     * 屏幕之前的播放区域保留当前画面，未写入的方块不再写入
+     *
+     * @param stream   视频流
+     * @param location 播放起始位置
+     */
+    void play(VideoStream stream, Location location) {
+        stop();
+        discardSinks();
+        removing = false;
+        culled = false;
+        repaint = false;
+
+        sink = createSink(location, stream.getWidth(), stream.getHeight());
+        this.stream = stream;
+        stream.addScreen(this);
+    }
+
+    /**
+     * 切换到更小的分辨率，由视频流在切换低分辨率版本时调用
+     * 新的输出从同一起始位置开始，旧输出分批清除新区域以外的画面
+     *
+     * @param width  新的宽度
+     * @param height 新的高度
+     */
+    void resize(int width, int height) {
+        if (sink == null) {
+            return;
+        }
+        if (retiring != null) {
+            retiring.discard();
+        }
+
+        Location origin = sink.getOrigin();
+        retiring = sink;
+        retiring.clearOutside(width, height);
+        sink = createSink(origin, width, height);
+        // 新区域位于旧区域之内，沿用旧的观看者，新输出的第一帧直接发送给他们
+        sink.updateViewers(retiring.getViewers());
+    }
+
+    /**
+     * 按显示模式创建帧输出
+     */
+    private FrameSink createSink(Location origin, int width, int height) {
+        if (displayMode == DisplayMode.MAP) {
+            return new MapFrameSink(name, origin, width, height);
+        }
+
+        ViewerTracker viewers = ViewerTracker.forArea(origin, width, height);
+        ChunkBlockWriter writer = displayMode == DisplayMode.PACKET
+            ? new PacketBlockWriter(origin.getWorld(), origin, width, height, viewers)
+            : new ChunkBlockWriter(origin.getWorld(), origin, width, height);
+        return new BlockPlacer(origin, width, height, writer, viewers);
+    }
+
+    /**
+     * 更新视距内的观看者
+     * 缩小屏幕时旧输出需要向同样的观看者恢复多余区域
+     * 启用观看者剔除时，没有观看者的屏幕停止放置帧，重新有观看者时标记需要重绘
+     *
+     * @param candidates 候选观看者（屏幕所在世界的玩家）
+     */
+    void updateViewers(Collection<? extends FrameViewer> candidates) {
+        if (retiring != null) {
+            retiring.updateViewers(candidates);
+        }
+        if (sink == null) {
+            return;
+        }
+
+        sink.updateViewers(candidates);
+        boolean visible = !culling || sink.getViewerCount() > 0;
+        if (visible && culled) {
+            repaint = true;
+        }
+        culled = !visible;
+    }
+
+    /**
+     * 检查屏幕是否因为没有观看者而停止放置帧
+     */
+    public boolean isCulled() {
+        return culled;
+    }
+
+    /**
+     * 检查屏幕是否在重新有观看者后尚未放置过帧
+     */
+    boolean needsRepaint() {
+        return repaint;
+    }
+
+    /**
+     * 放置一帧，记录耗时并发出 JFR 事件
+     *
+     * @param frame 帧缓冲区，调用方已为输出增加引用
+     */
+    void placeFrame(FrameBuffer frame) {
+        FramePlacedEvent event = new FramePlacedEvent();
+        event.begin();
+
+        int pendingBefore = sink.getPendingCount();
+        long start = System.nanoTime();
+        sink.placeFrame(frame);
+        placeLatency.record(System.nanoTime() - start);
+        framesPlaced++;
+        repaint = false;
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.screen = name;
+            event.video = stream != null ? stream.getName() : null;
+            event.frameIndex = frame.getIndex();
+            event.changedBlocks = sink.getPendingCount() - pendingBefore;
+            event.pendingBlocks = sink.getPendingCount();
+            event.bufferedFrames = stream != null ? stream.getBufferedFrames() : 0;
+            event.commit();
+        }
+    }
+
+    /**
+     * 停止播放，画面保留当前帧
+     * 已放置但尚未写入的方块会在之后的 tick 中继续写入
+     */
+    void stop() {
+        if (stream != null) {
+            VideoStream old = stream;
+            stream = null;
+            old.removeScreen(this);
+        }
+    }
+
+    /**
+     * 停止播放并清除播放区域，清除完成后屏幕被移除
+     */
+    void clear() {
+        stop();
+        if (sink != null) {
+            sink.clear();
+            removing = true;
+        }
+    }
+
+    /**
+     * 视频流结束时由视频流调用
+     */
+    void detach() {
+        stream = null;
+    }
+
+    /**
+     * 在时间预算内写入待写入的方块
+     *
+     * @param deadline 截止时间（System.nanoTime）
+     */
+    void flush(long deadline) {
+        if (retiring != null) {
+            retiring.flush(deadline);
+            if (!retiring.hasPendingWrites()) {
+                retiring = null;
+            }
+        }
+        if (sink != null && sink.hasPendingWrites()) {
+            long start = System.nanoTime();
+            int written = sink.flush(deadline);
+            if (written > 0) {
+                applyLatency.record(System.nanoTime() - start);
+                blocksWritten += written;
+            }
+        }
+    }
+
+    /**
+     * 检查是否还有未写入的方块
+     */
+    boolean hasPendingWrites() {
+        return (sink != null && sink.hasPendingWrites())
+            || (retiring != null && retiring.hasPendingWrites());
+    }
+
+    /**
+     * 检查清除是否已完成，屏幕可以移除
+     */
+    boolean isRemovable() {
+        return removing && !hasPendingWrites();
+    }
+
+    /**
+     * 释放屏幕持有的帧
+     */
+    void discard() {
+        stop();
+        discardSinks();
+    }
+
+    /**
+     * 丢弃所有输出未写入的内容
+     */
+    private void discardSinks() {
+        if (retiring != null) {
+            retiring.discard();
+            retiring = null;
+        }
+        if (sink != null) {
+            sink.discard();
+            sink = null;
+        }
+    }
+
+    /**
+     * 获取屏幕所在的世界，没有输出时返回 null
+     */
+    public World getWorld() {
+        return sink != null ? sink.getOrigin().getWorld() : null;
+    }
+
+    /**
+     * 获取显示模式
+     */
+    public DisplayMode getDisplayMode() {
+        return displayMode;
+    }
+
+    /**
+     * 获取视距内的观看者数量
+     */
+    public int getViewerCount() {
+        return sink != null ? sink.getViewerCount() : 0;
+    }
+
+    /**
+     * 获取屏幕名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 检查是否正在播放
+     */
+    public boolean isPlaying() {
+        return stream != null;
+    }
+
+    /**
+     * 获取正在播放的视频流，没有播放时返回 null
+     */
+    public VideoStream getStream() {
+        return stream;
+    }
+
+    /**
+     * 获取放置的帧数
+     */
+    public long getFramesPlaced() {
+        return framesPlaced;
+    }
+
+    /**
+     * 获取写入的方块数
+     */
+    public long getBlocksWritten() {
+        return blocksWritten;
+    }
+
+    /**
+     * 获取放置帧（比较并标记需要写入的方块）的耗时
+     */
+    public LatencyHistogram getPlaceLatency() {
+        return placeLatency;
+    }
+
+    /**
+     * 获取每 tick 写入方块的耗时
+     */
+    public LatencyHistogram getApplyLatency() {
+        return applyLatency;
+    }
+
+    /**
+     * 清空统计
+     */
+    public void resetStats() {
+        framesPlaced = 0;
+        blocksWritten = 0;
+        placeLatency.reset();
+        applyLatency.reset();
+    }
+
+    /**
+     * 获取帧输出，没有播放过时返回 null
+     */
+    public FrameSink getSink() {
+        return sink;
+    }
+}
@@ -0,0 +1,382 @@
+package com.videoplayermc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * 预处理视频目录
+ * 在 processed/catalog.dat 中记录每个帧数据文件的文件头（帧数、尺寸、格式版本、索引位置）、
+ * 文件长度和修改时间，开始播放和补全视频名称时只读取目录，不需要列出和打开文件
+ * 目录只在启动时（{@link #load()}）与 processed 目录同步，之后由处理和导入完成后的 {@link #update(File)} 更新；
+ * 按名称查找时文件长度或修改时间变化的记录视为过期，只重新读取该文件的文件头
+ * 可以被多个线程同时使用
+ */
+public class VideoCatalog {
+
+    /**
+     * 目录文件名
+     */
+    public static final String FILE_NAME = "catalog.dat";
+
+    private static final int MAGIC_NUMBER = 0x564D4354; // "VMCT"
+    private static final int VERSION = 3;
+    private static final String EXTENSION = ".vmfr";
+
+    private final File processedDir;
+    private final File catalogFile;
+    private final Logger logger;
+
+    // 按名称（文件名去掉扩展名）排序的记录，低分辨率版本的名称中带有分隔符
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * 一个帧数据文件的记录
+     */
+    public static final class Entry {
+        private final String name;
+        private final long length;
+        private final long modified;
+        private final FrameSerializer.Header header;
+
+        Entry(String name, long length, long modified, FrameSerializer.Header header) {
+            this.name = name;
+            this.length = length;
+            this.modified = modified;
+            this.header = header;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getFrameCount() {
+            return header.frameCount;
+        }
+
+        public int getWidth() {
+            return header.width;
+        }
+
+        public int getHeight() {
+            return header.height;
+        }
+
+        public int getVersion() {
+            return header.version;
+        }
+
+        /**
+         * 获取处理时的调色板标识，与 {@link Palette#getHash()} 不同时需要重新处理
+         */
+        public long getPaletteHash() {
+            return header.paletteHash;
+        }
+
+        /**
+         * 获取文件头，打开帧来源时不需要再次读取
+         */
+        FrameSerializer.Header getHeader() {
+            return header;
+        }
+
+        /**
+         * 检查记录是否仍与文件一致（只比较长度和修改时间）
+         */
+        boolean matches(File file) {
+            return file.length() == length && file.lastModified() == modified;
+        }
+
+        /**
+         * 检查是否为低分辨率版本
+         */
+        public boolean isVariant() {
+            return name.contains(VideoProcessor.VARIANT_SEPARATOR);
+        }
+    }
+
+    public VideoCatalog(File processedDir, Logger logger) {
+        this.processedDir = processedDir;
+        this.catalogFile = new File(processedDir, FILE_NAME);
+        this.logger = logger;
+    }
+
+    /**
+     * 读取目录文件，文件不存在或无效时扫描 processed 目录重新生成
+     */
+    public void load() {
+        if (catalogFile.isFile()) {
+            try {
+                Map<String, Entry> loaded = read();
+                synchronized (this) {
+                    entries.clear();
+                    entries.putAll(loaded);
+                }
+                // 上次运行后目录中可能有文件变化，只重新读取变化的文件
+                refresh();
+                return;
+            } catch (IOException e) {
+                logger.warning("视频目录无效，重新生成: " + e.getMessage());
+            }
+        }
+        rescan();
+    }
+
+    /**
+     * 查找视频
+     * 记录过期时重新读取文件头；目录中没有记录但文件存在时（例如手动复制的文件）添加记录
+     *
+     * @param name 视频名称
+     * @return 视频记录，文件不存在或无效时返回 null
+     */
+    public synchronized Entry get(String name) {
+        File file = new File(processedDir, name + EXTENSION);
+        Entry entry = entries.get(name);
+        if (entry != null && entry.matches(file)) {
+            return entry;
+        }
+        if (entry == null && !file.isFile()) {
+            return null;
+        }
+        return update(file);
+    }
+
+    /**
+     * 获取所有视频名称（不含低分辨率版本），按名称排序
+     * 只读取内存中的记录，可以在每次补全时调用
+     */
+    public synchronized List<String> getNames() {
+        List<String> names = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (!entry.isVariant()) {
+                names.add(entry.name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 获取视频的所有低分辨率版本（未排序），跳过已不存在的文件
+     */
+    public List<Entry> getVariants(String name) {
+        String prefix = name + VideoProcessor.VARIANT_SEPARATOR;
+        List<String> candidates = new ArrayList<>();
+        synchronized (this) {
+            // 名称按字符串排序，同一视频的版本相邻
+            for (String key : entries.tailMap(prefix, true).keySet()) {
+                if (!key.startsWith(prefix)) {
+                    break;
+                }
+                if (key.indexOf(VideoProcessor.VARIANT_SEPARATOR, prefix.length()) < 0) {
+                    candidates.add(key);
+                }
+            }
+        }
+
+        List<Entry> variants = new ArrayList<>();
+        for (String key : candidates) {
+            Entry entry = get(key);
+            if (entry != null) {
+                variants.add(entry);
+            }
+        }
+        return variants;
+    }
+
+    /**
+     * 获取视频对应的帧数据文件
+     */
+    public File getFile(Entry entry) {
+        return new File(processedDir, entry.name + EXTENSION);
+    }
+
+    /**
+     * 重新读取一个帧数据文件的文件头并写入目录
+     * 处理或导入完成后调用
+     *
+     * @param file 帧数据文件
+     * @return 新的记录，文件不存在或无效时返回 null（同时删除记录）
+     */
+    public Entry update(File file) {
+        String name = nameOf(file);
+        Entry entry;
+        try {
+            entry = file.isFile() ? readEntry(name, file) : null;
+        } catch (IOException e) {
+            logger.warning("无法读取帧数据文件: " + file.getName() + " - " + e.getMessage());
+            entry = null;
+        }
+
+        synchronized (this) {
+            if (entry != null) {
+                entries.put(name, entry);
+            } else {
+                entries.remove(name);
+            }
+            save();
+        }
+        return entry;
+    }
+
+    /**
+     * 同步 processed 目录：删除已不存在的文件，重新读取长度或修改时间变化的文件，添加新文件
+     * 未变化的文件不会被打开，变化的文件只读取文件头
+     */
+    public void refresh() {
+        File[] files = processedDir.listFiles((dir, fileName) -> fileName.endsWith(EXTENSION));
+
+        Map<String, Entry> current;
+        synchronized (this) {
+            current = new HashMap<>(entries);
+        }
+
+        // 在锁外读取变化的文件
+        Map<String, Entry> next = new HashMap<>();
+        boolean changed = false;
+        if (files != null) {
+            for (File file : files) {
+                String name = nameOf(file);
+                Entry entry = current.get(name);
+                if (entry == null || !entry.matches(file)) {
+                    changed = true;
+                    try {
+                        entry = readEntry(name, file);
+                    } catch (IOException e) {
+                        logger.warning("无法读取帧数据文件: " + file.getName() + " - " + e.getMessage());
+                        continue;
+                    }
+                }
+                next.put(name, entry);
+            }
+        }
+        changed |= next.size() != current.size();
+
+        if (changed) {
+            synchronized (this) {
+                entries.clear();
+                entries.putAll(next);
+                save();
+            }
+        }
+    }
+
+    /**
+     * 重新扫描 processed 目录生成目录文件
+     */
+    public void rescan() {
+        synchronized (this) {
+            entries.clear();
+        }
+        refresh();
+        synchronized (this) {
+            // refresh 在没有文件时不会写入
+            save();
+            logger.info("视频目录已生成，共 " + entries.size() + " 个帧数据文件");
+        }
+    }
+
+    /**
+     * 读取帧数据文件的文件头
+     */
+    private static Entry readEntry(String name, File file) throws IOException {
+        // 先记录长度和修改时间，读取期间文件被修改时下次查找会重新读取
+        long length = file.length();
+        long modified = file.lastModified();
+
+        FrameSerializer.Header header;
+        try (DataInputStream dis = new DataInputStream(new FileInputStream(file))) {
+            header = FrameSerializer.readHeader(dis);
+        }
+        return new Entry(name, length, modified, header);
+    }
+
+    /**
+     * 获取帧数据文件对应的视频名称
+     */
+    private static String nameOf(File file) {
+        String name = file.getName();
+        return name.endsWith(EXTENSION) ? name.substring(0, name.length() - EXTENSION.length()) : name;
+    }
+
+    /**
+     * 读取目录文件
+     */
+    private Map<String, Entry> read() throws IOException {
+        Map<String, Entry> loaded = new HashMap<>();
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(catalogFile)))) {
+            if (dis.readInt() != MAGIC_NUMBER) {
+                throw new IOException("文件格式无效");
+            }
+            int version = dis.readInt();
+            if (version != VERSION) {
+                throw new IOException("不支持的版本: " + version);
+            }
+
+            int count = dis.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = dis.readUTF();
+                long length = dis.readLong();
+                long modified = dis.readLong();
+
+                FrameSerializer.Header header = new FrameSerializer.Header();
+                header.version = dis.readInt();
+                header.frameCount = dis.readInt();
+                header.width = dis.readInt();
+                header.height = dis.readInt();
+                header.keyframeInterval = dis.readInt();
+                header.bitsPerPixel = dis.readInt();
+                header.headerSize = dis.readInt();
+                header.indexOffset = dis.readLong();
+                header.paletteHash = dis.readLong();
+                loaded.put(name, new Entry(name, length, modified, header));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 写入目录文件（先写入临时文件再替换），需要持有锁
+     */
+    private void save() {
+        File tempFile = new File(processedDir, FILE_NAME + ".tmp");
+        try {
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                dos.writeInt(MAGIC_NUMBER);
+                dos.writeInt(VERSION);
+                dos.writeInt(entries.size());
+                for (Entry entry : entries.values()) {
+                    FrameSerializer.Header header = entry.header;
+                    dos.writeUTF(entry.name);
+                    dos.writeLong(entry.length);
+                    dos.writeLong(entry.modified);
+                    dos.writeInt(header.version);
+                    dos.writeInt(header.frameCount);
+                    dos.writeInt(header.width);
+                    dos.writeInt(header.height);
+                    dos.writeInt(header.keyframeInterval);
+                    dos.writeInt(header.bitsPerPixel);
+                    dos.writeInt(header.headerSize);
+                    dos.writeLong(header.indexOffset);
+                    dos.writeLong(header.paletteHash);
+                }
+            }
+            Files.move(tempFile.toPath(), catalogFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            tempFile.delete();
+            logger.warning("无法写入视频目录: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.videoplayermc;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 播放控制命令处理器
+ * 命令格式: /videocontrol [屏幕名称] <pause|resume|seek|loop|stop|clear|list> [参数]
+ * 暂停、跳转和循环作用于屏幕正在播放的视频，同一视频的其他屏幕同步变化
+ */
+public class VideoControlCommand implements CommandExecutor {
+
+    private static final List<String> ACTIONS = Arrays.asList("pause", "resume", "seek", "loop", "stop", "clear", "list");
+
+    private final VideoManager videoManager;
+
+    public VideoControlCommand(VideoPlayerMC plugin, VideoManager videoManager) {
+        this.videoManager = videoManager;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        // 检查权限
+        if (!sender.hasPermission("videoplayermc.play")) {
+            sender.sendMessage("§c你没有权限使用此命令！");
+            return true;
+        }
+
+        // 第一个参数不是操作时视为屏幕名称
+        String screenName = VideoManager.DEFAULT_SCREEN;
+        if (args.length > 0 && !ACTIONS.contains(args[0].toLowerCase())) {
+            screenName = args[0];
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        // 检查参数数量
+        if (args.length < 1) {
+            sendUsage(sender);
+            return true;
+        }
+
+        String action = args[0].toLowerCase();
+        if (action.equals("list")) {
+            listScreens(sender);
+            return true;
+        }
+
+        Screen screen = videoManager.getScreen(screenName);
+        if (screen == null) {
+            sender.sendMessage("§c屏幕不存在: " + screenName);
+            return true;
+        }
+
+        VideoStream stream = screen.getStream();
+        switch (action) {
+            case "pause":
+                if (!checkPlaying(sender, stream)) {
+                    return true;
+                }
+                stream.pause();
+                sender.sendMessage("§a已暂停播放");
+                break;
+
+            case "resume":
+                if (!checkPlaying(sender, stream)) {
+                    return true;
+                }
+                stream.resume();
+                sender.sendMessage("§a已恢复播放");
+                break;
+
+            case "seek":
+                if (!checkPlaying(sender, stream)) {
+                    return true;
+                }
+                if (args.length < 2) {
+                    sender.sendMessage("§c用法: /videocontrol [屏幕名称] seek <秒>");
+                    return true;
+                }
+
+                double seconds;
+                try {
+                    seconds = Double.parseDouble(args[1]);
+                } catch (NumberFormatException e) {
+                    sender.sendMessage("§c时间必须是数字！");
+                    return true;
+                }
+
+                int frameIndex = (int) (seconds * VideoProcessor.getTargetFps());
+                if (frameIndex < 0 || frameIndex >= stream.getTotalFrames()) {
+                    sender.sendMessage("§c时间超出视频长度！");
+                    return true;
+                }
+
+                stream.seek(frameIndex);
+                sender.sendMessage("§a已跳转到 " + args[1] + " 秒（第 " + frameIndex + " 帧）");
+                break;
+
+            case "loop":
+                if (!checkPlaying(sender, stream)) {
+                    return true;
+                }
+                boolean looping = args.length < 2 ? !stream.isLooping() : args[1].equalsIgnoreCase("on");
+                stream.setLooping(looping);
+                sender.sendMessage(looping ? "§a已开启循环播放" : "§a已关闭循环播放");
+                break;
+
+            case "stop":
+                videoManager.stop(screenName);
+                sender.sendMessage("§a已停止播放");
+                break;
+
+            case "clear":
+                videoManager.clear(screenName);
+                sender.sendMessage("§a正在清除播放区域");
+                break;
+
+            default:
+                sendUsage(sender);
+                break;
+        }
+
+        return true;
+    }
+
+    /**
+     * 检查屏幕是否正在播放视频
+     */
+    private boolean checkPlaying(CommandSender sender, VideoStream stream) {
+        if (stream == null) {
+            sender.sendMessage("§c该屏幕没有正在播放的视频！");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 列出所有屏幕
+     */
+    private void listScreens(CommandSender sender) {
+        if (videoManager.getScreens().isEmpty()) {
+            sender.sendMessage("§7当前没有屏幕");
+            return;
+        }
+
+        PlaybackGovernor governor = videoManager.getGovernor();
+        sender.sendMessage("§e屏幕列表:" + (governor.isEnabled()
+            ? String.format("§7（播放调节: %s，MSPT %.1fms）", governor.getLevel().getDisplayName(), governor.getLastMspt()) : ""));
+        for (Screen screen : videoManager.getScreens()) {
+            VideoStream stream = screen.getStream();
+            if (stream == null) {
+                sender.sendMessage("§7  " + screen.getName() + " - 空闲");
+            } else {
+                sender.sendMessage("§7  " + screen.getName() + " - " + stream.getName()
+                    + "（第 " + stream.getCurrentFrameIndex() + "/" + stream.getTotalFrames() + " 帧"
+                    + (stream.isPaused() ? "，已暂停" : stream.isHeld() ? "，负载过高暂停中" : "")
+                    + (screen.isCulled() ? "，无人观看" : "") + "）");
+            }
+        }
+    }
+
+    /**
+     * 发送用法说明
+     */
+    private void sendUsage(CommandSender sender) {
+        sender.sendMessage("§c用法: /videocontrol [屏幕名称] <pause|resume|seek|loop|stop|clear|list> [参数]");
+        sender.sendMessage("§7  pause - 暂停播放");
+        sender.sendMessage("§7  resume - 恢复播放");
+        sender.sendMessage("§7  seek <秒> - 跳转到指定时间");
+        sender.sendMessage("§7  loop [on|off] - 切换循环播放");
+        sender.sendMessage("§7  stop - 停止播放并保留当前画面");
+        sender.sendMessage("§7  clear - 停止播放并清除播放区域");
+        sender.sendMessage("§7  list - 列出所有屏幕");
+        sender.sendMessage("§7未指定屏幕名称时使用默认屏幕 " + VideoManager.DEFAULT_SCREEN);
+    }
+}
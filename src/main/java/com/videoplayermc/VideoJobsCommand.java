@@ -0,0 +1,87 @@
+package com.videoplayermc;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+
+import java.util.List;
+
+/**
+ * 预处理任务命令处理器
+ * 命令格式: /videojobs [status|cancel <任务编号>]
+ */
+public class VideoJobsCommand implements CommandExecutor {
+
+    private final ProcessingScheduler scheduler;
+
+    public VideoJobsCommand(ProcessingScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        // 检查权限
+        if (!sender.hasPermission("videoplayermc.process")) {
+            sender.sendMessage("§c你没有权限使用此命令！");
+            return true;
+        }
+
+        String action = args.length > 0 ? args[0].toLowerCase() : "status";
+        switch (action) {
+            case "status":
+                showStatus(sender);
+                break;
+
+            case "cancel":
+                if (args.length < 2) {
+                    sender.sendMessage("§c用法: /videojobs cancel <任务编号>");
+                    return true;
+                }
+                try {
+                    int id = Integer.parseInt(args[1].startsWith("#") ? args[1].substring(1) : args[1]);
+                    if (scheduler.cancel(id)) {
+                        sender.sendMessage("§a已取消任务 #" + id);
+                    } else {
+                        sender.sendMessage("§c任务不存在或已结束: #" + id);
+                    }
+                } catch (NumberFormatException e) {
+                    sender.sendMessage("§c任务编号必须是数字！");
+                }
+                break;
+
+            default:
+                sender.sendMessage("§c用法: /videojobs [status|cancel <任务编号>]");
+                break;
+        }
+
+        return true;
+    }
+
+    /**
+     * 显示所有任务的状态
+     */
+    private void showStatus(CommandSender sender) {
+        List<ProcessingJob> jobs = scheduler.getJobs();
+        if (jobs.isEmpty()) {
+            sender.sendMessage("§7没有预处理任务");
+            return;
+        }
+
+        sender.sendMessage("§e预处理任务（排队 " + scheduler.getQueuedCount() + " 个）:");
+        for (ProcessingJob job : jobs) {
+            StringBuilder line = new StringBuilder("§7#").append(job.getId()).append(' ')
+                .append(job.getName()).append(": ").append(job.getState().getDisplayName());
+            if (job.getKind() == ProcessingJob.Kind.FRAMES) {
+                line.append("（").append(job.getKind().getDisplayName()).append("）");
+            }
+            if (job.getState() != ProcessingJob.State.QUEUED) {
+                line.append("，").append(job.getProcessedFrames()).append(" 帧，")
+                    .append(job.getElapsedMillis() / 1000).append(" 秒");
+            }
+            if (job.getError() != null) {
+                line.append("（").append(job.getError()).append("）");
+            }
+            sender.sendMessage(line.toString());
+        }
+    }
+}
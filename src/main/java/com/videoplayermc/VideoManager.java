@@ -3,195 +3,485 @@ package com.videoplayermc;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
+import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitTask;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.io.File;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import javax.imageio.ImageIO;
+import java.util.Map;
 
 /**
  * 视频播放管理器
- * 负责协调视频播放的时序控制
+ * 管理所有有名称的屏幕和正在播放的视频流，由一个共享的 tick 任务统一驱动
+ * 多个屏幕播放同一视频时共享同一个视频流，帧只解码一次
  */
 public class VideoManager {
 
+    /**
+     * 未指定屏幕名称时使用的屏幕
+     */
+    public static final String DEFAULT_SCREEN = "default";
+
+    // 每隔多少 tick 更新一次屏幕视距内的观看者
+    private static final int VIEWER_UPDATE_TICKS = 10;
+
     private final VideoPlayerMC plugin;
+    private final int prefetchFrames;
+    private final long tickBudgetNanos;
+    private final int downgradeTicks;
+    private final PlaybackGovernor governor;
+    private final Screen.DisplayMode displayMode;
+    private final boolean viewerCulling;
 
-    private List<Palette[][]> frames;
-    private List<File> frameFiles;
-    private BlockPlacer blockPlacer;
+    private final Map<String, Screen> screens = new LinkedHashMap<>();
+    private final Map<String, VideoStream> streams = new HashMap<>();
+    private final List<Screen> flushOrder = new ArrayList<>();
     private BukkitTask playTask;
-    private int currentFrameIndex;
-    private boolean isPlaying;
+
+    // 写入方块时的起始屏幕，轮流优先，避免排在后面的屏幕总是超出时间预算
+    private int flushCursor;
+
+    // tick 任务运行的 tick 数，用于降低更新频率
+    private long tickCount;
 
     public VideoManager(VideoPlayerMC plugin) {
         this.plugin = plugin;
-        this.currentFrameIndex = 0;
-        this.isPlaying = false;
+        this.prefetchFrames = plugin.getConfig().getInt("playback.prefetch-frames", 40);
+        this.tickBudgetNanos = plugin.getConfig().getLong("playback.tick-budget-nanos", 5_000_000L);
+        this.downgradeTicks = plugin.getConfig().getBoolean("playback.adaptive-resolution", true)
+            ? plugin.getConfig().getInt("playback.downgrade-ticks", 40) : 0;
+        this.governor = createGovernor(plugin);
+        if (governor.isEnabled()) {
+            Bukkit.getPluginManager().registerEvents(governor, plugin);
+        }
+        this.displayMode = readDisplayMode(plugin);
+        this.viewerCulling = plugin.getConfig().getBoolean("playback.viewer-culling", true);
         // 初始化颜色量化器
         ColorQuantizer.initialize();
     }
 
     /**
-     * 从图片文件夹播放视频
+     * 按配置创建播放调节器，阈值无效时不启用
+     */
+    private static PlaybackGovernor createGovernor(VideoPlayerMC plugin) {
+        boolean enabled = plugin.getConfig().getBoolean("governor.enabled", true);
+        try {
+            return new PlaybackGovernor(plugin.getLogger(), enabled,
+                plugin.getConfig().getDouble("governor.reduced-mspt", 40.0),
+                plugin.getConfig().getDouble("governor.partial-mspt", 45.0),
+                plugin.getConfig().getDouble("governor.paused-mspt", 50.0),
+                plugin.getConfig().getDouble("governor.hysteresis-mspt", 5.0),
+                plugin.getConfig().getInt("governor.recover-ticks", 100));
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning(e.getMessage() + "，播放调节器未启用");
+            return new PlaybackGovernor(plugin.getLogger(), false, 40.0, 45.0, 50.0, 5.0, 100);
+        }
+    }
+
+    /**
+     * 读取显示模式，无效时直接写入世界
+     */
+    private static Screen.DisplayMode readDisplayMode(VideoPlayerMC plugin) {
+        String mode = plugin.getConfig().getString("playback.display-mode", "world");
+        try {
+            return Screen.DisplayMode.valueOf(mode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("无效的显示模式: " + mode + "，使用 world");
+            return Screen.DisplayMode.WORLD;
+        }
+    }
+
+    /**
+     * 在指定屏幕上从图片文件夹播放视频
      *
-     * @param frameDir 帧图片目录
-     * @param location  播放起始位置
+     * @param screenName 屏幕名称
+     * @param frameDir   帧图片目录
+     * @param location   播放起始位置
      * @throws Exception 如果加载失败
      */
-    public void playFromImages(File frameDir, Location location) throws Exception {
-        // 停止当前播放
-        stop();
-
+    public void playFromImages(String screenName, File frameDir, Location location) throws Exception {
         // 检查目录是否存在
         if (!frameDir.exists() || !frameDir.isDirectory()) {
             throw new IllegalArgumentException("帧图片目录不存在: " + frameDir);
         }
 
-        // 加载所有帧图片文件
-        plugin.getLogger().info("正在加载帧图片: " + frameDir);
-        frameFiles = new ArrayList<>();
+        play(screenName, frameDir, location, () -> {
+            // 加载所有帧图片文件
+            plugin.getLogger().info("正在加载帧图片: " + frameDir);
+            int width = VideoProcessor.getTargetWidth();
+            int height = VideoProcessor.getTargetHeight();
+            FrameSource source = new ImageFrameSource(frameDir, width, height);
+
+            if (source.getFrameCount() == 0) {
+                throw new IllegalArgumentException("没有找到帧图片文件");
+            }
+
+            plugin.getLogger().info("帧图片加载完成，共 " + source.getFrameCount() + " 帧");
+            return Collections.singletonList(source);
+        });
+    }
 
-        // 按文件名排序加载
-        File[] files = frameDir.listFiles((dir, name) -> name.endsWith(".png"));
-        if (files != null) {
-            java.util.Arrays.sort(files, (f1, f2) -> {
-                String n1 = f1.getName().replace("frame_", "").replace(".png", "");
-                String n2 = f2.getName().replace("frame_", "").replace(".png", "");
-                return Integer.compare(Integer.parseInt(n1), Integer.parseInt(n2));
-            });
-            frameFiles.addAll(java.util.Arrays.asList(files));
+    /**
+     * 在指定屏幕上从帧数据文件（.vmfr）播放视频
+     * 文件头和低分辨率版本都从视频目录中读取，不需要列出 processed 目录
+     *
+     * @param screenName 屏幕名称
+     * @param entry      视频目录中的记录
+     * @param location   播放起始位置
+     * @throws Exception 如果加载失败
+     */
+    public void playFromFile(String screenName, VideoCatalog.Entry entry, Location location) throws Exception {
+        if (entry.getFrameCount() == 0) {
+            throw new IllegalArgumentException("帧数据文件中没有帧");
         }
+        if (entry.getPaletteHash() != Palette.getHash()) {
+            throw new IllegalArgumentException("视频使用的调色板与当前配置不同，请重新处理视频");
+        }
+
+        VideoCatalog catalog = plugin.getCatalog();
+        File frameFile = catalog.getFile(entry);
+        play(screenName, frameFile, location, () -> {
+            FrameSource source = FrameSerializer.openFrameSource(frameFile, entry.getHeader());
+
+            List<FrameSource> sources = new ArrayList<>();
+            sources.add(source);
+            if (downgradeTicks > 0) {
+                sources.addAll(openVariants(catalog, entry));
+            }
 
-        if (frameFiles.isEmpty()) {
-            throw new IllegalArgumentException("没有找到帧图片文件");
+            plugin.getLogger().info("帧数据文件已打开: " + frameFile.getName() + "，" + source.getWidth() + "x" + source.getHeight()
+                + "，共 " + source.getFrameCount() + " 帧" + (sources.size() > 1 ? "，低分辨率版本 " + (sources.size() - 1) + " 个" : ""));
+            return sources;
+        });
+    }
+
+    /**
+     * 打开帧数据文件的低分辨率版本
+     * 只使用帧数与主文件相同、宽高都更小的版本，按分辨率从大到小排列
+     */
+    private List<FrameSource> openVariants(VideoCatalog catalog, VideoCatalog.Entry primary) {
+        List<FrameSource> variants = new ArrayList<>();
+        for (VideoCatalog.Entry entry : catalog.getVariants(primary.getName())) {
+            File file = catalog.getFile(entry);
+            if (entry.getFrameCount() != primary.getFrameCount() || entry.getPaletteHash() != primary.getPaletteHash()
+                || entry.getWidth() >= primary.getWidth() || entry.getHeight() >= primary.getHeight()) {
+                plugin.getLogger().warning("忽略与主文件不匹配的低分辨率版本: " + file.getName());
+                continue;
+            }
+            try {
+                variants.add(FrameSerializer.openFrameSource(file, entry.getHeader()));
+            } catch (Exception e) {
+                plugin.getLogger().warning("无法打开低分辨率版本: " + file.getName() + " - " + e.getMessage());
+            }
         }
+        variants.sort((a, b) -> Integer.compare(b.getWidth() * b.getHeight(), a.getWidth() * a.getHeight()));
+        return variants;
+    }
 
-        plugin.getLogger().info("帧图片加载完成，共 " + frameFiles.size() + " 帧");
+    /**
+     * 在指定屏幕上播放视频
+     * 已有屏幕在播放同一视频时加入该视频流，与其同步播放，不再重复解码
+     *
+     * @param screenName 屏幕名称
+     * @param video      帧数据文件或帧图片目录
+     * @param location   播放起始位置
+     * @param opener     打开帧来源及其低分辨率版本（只在没有现成的视频流时调用）
+     */
+    private void play(String screenName, File video, Location location, SourceOpener opener) throws Exception {
+        Screen screen = screens.get(screenName);
+        if (screen == null) {
+            screen = new Screen(screenName, displayMode, viewerCulling);
+        } else {
+            // 先停止屏幕当前的播放，没有其他屏幕订阅的视频流随之关闭
+            screen.stop();
+            removeClosedStreams();
+        }
 
-        // 创建方块放置器
-        World world = location.getWorld();
-        int width = VideoProcessor.getTargetWidth();
-        int height = VideoProcessor.getTargetHeight();
-        blockPlacer = new BlockPlacer(world, location, width, height);
+        String key = video.getCanonicalPath();
+        VideoStream stream = streams.get(key);
+        if (stream == null) {
+            stream = new VideoStream(key, video.getName(), opener.open(), prefetchFrames, plugin.getLogger());
+            stream.setDowngradeTicks(downgradeTicks);
+            stream.start();
+            streams.put(key, stream);
+        }
 
-        // 开始播放
-        currentFrameIndex = 0;
-        isPlaying = true;
+        screen.play(stream, location);
+        if (screens.put(screenName, screen) == null) {
+            flushOrder.add(screen);
+        }
+        if (isTrackingViewers()) {
+            screen.updateViewers(collectViewers(location.getWorld()));
+        }
 
-        // 每tick（50ms）播放一帧，实现 20fps
-        playTask = Bukkit.getScheduler().runTaskTimer(plugin, this::playNextImageFrame, 0, 1);
+        // 每 tick 按播放时钟选择应显示的帧，并在时间预算内写入方块
+        startTickTask();
 
-        plugin.getLogger().info("开始播放视频");
+        plugin.getLogger().info("屏幕 " + screenName + " 开始播放视频: " + video.getName()
+            + "（该视频共有 " + stream.getScreenCount() + " 个屏幕）");
     }
 
     /**
-     * 播放下一帧（从图片）
+     * 启动 tick 任务（如果尚未运行）
      */
-    private void playNextImageFrame() {
-        if (!isPlaying || frameFiles == null || currentFrameIndex >= frameFiles.size()) {
-            // 播放结束
-            stop();
-            plugin.getLogger().info("视频播放完成");
-            return;
+    private void startTickTask() {
+        if (playTask == null) {
+            playTask = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 0, 1);
         }
+    }
 
-        // 加载并放置当前帧
-        File frameFile = frameFiles.get(currentFrameIndex);
-        try {
-            BufferedImage image = ImageIO.read(frameFile);
-            if (image != null) {
-                Palette[][] frame = convertImageToPalette(image);
-                blockPlacer.placeFrame(frame);
-            } else {
-                plugin.getLogger().warning("无法读取帧图片: " + frameFile.getName());
+    /**
+     * 每 tick 执行一次
+     * 所有视频流推进到各自播放时钟对应的帧，然后在共享的时间预算内写入各屏幕待写入的方块；
+     * 停止播放后继续写入剩余方块（包括分批清除），全部完成后结束任务
+     */
+    private void tick() {
+        long tickStart = System.nanoTime();
+        PlaybackGovernor.Level level = governor.update();
+        tickCount++;
+
+        // 定期更新各屏幕视距内的观看者：没有观看者的屏幕停止放置帧，客户端显示模式下新进入范围的玩家收到当前画面
+        if (isTrackingViewers() && tickCount % VIEWER_UPDATE_TICKS == 0) {
+            updateViewers();
+        }
+
+        if (level == PlaybackGovernor.Level.PAUSED) {
+            // 服务器负载过高，暂停所有视频流的播放时钟，写入预算为 0
+            for (VideoStream stream : streams.values()) {
+                stream.hold(tickStart);
+            }
+        } else if (tickCount % level.getTickInterval() == 0) {
+            // 降低更新频率时隔 tick 推进，中间到期的帧被跳过
+            for (VideoStream stream : new ArrayList<>(streams.values())) {
+                stream.release(tickStart);
+                stream.tick(tickStart);
+            }
+            removeClosedStreams();
+        }
+
+        // 所有屏幕共享同一个时间预算，每 tick 轮换起始屏幕
+        // 部分更新时只使用部分预算，未写入的方块顺延到之后的 tick
+        long deadline = tickStart + (long) (tickBudgetNanos * level.getBudgetFraction());
+        int count = flushOrder.size();
+        for (int i = 0; i < count && System.nanoTime() < deadline; i++) {
+            flushOrder.get((flushCursor + i) % count).flush(deadline);
+        }
+        flushCursor = count > 0 ? (flushCursor + 1) % count : 0;
+
+        // 写入持续超出完整预算的视频流切换到更小的版本
+        for (VideoStream stream : streams.values()) {
+            stream.checkBudget(level);
+        }
+
+        // 清除完成的屏幕被移除
+        boolean pending = false;
+        for (Iterator<Screen> it = flushOrder.iterator(); it.hasNext(); ) {
+            Screen screen = it.next();
+            if (screen.isRemovable()) {
+                screen.discard();
+                screens.remove(screen.getName());
+                it.remove();
+            } else if (screen.hasPendingWrites()) {
+                pending = true;
+            }
+        }
+
+        // 客户端显示模式下停止播放的屏幕仍需为新进入范围的玩家发送画面，直到被清除
+        if (streams.isEmpty() && !pending && (displayMode != Screen.DisplayMode.PACKET || flushOrder.isEmpty())) {
+            cancelTickTask();
+        }
+    }
+
+    /**
+     * 检查是否需要跟踪屏幕视距内的观看者
+     */
+    private boolean isTrackingViewers() {
+        return viewerCulling || displayMode == Screen.DisplayMode.PACKET;
+    }
+
+    /**
+     * 按屏幕所在世界的玩家更新各屏幕的观看者
+     */
+    private void updateViewers() {
+        Map<World, List<FrameViewer>> viewersByWorld = new HashMap<>();
+        for (Screen screen : flushOrder) {
+            World world = screen.getWorld();
+            if (world != null) {
+                screen.updateViewers(viewersByWorld.computeIfAbsent(world, VideoManager::collectViewers));
             }
-        } catch (IOException e) {
-            plugin.getLogger().warning("读取帧图片失败: " + frameFile.getName() + " - " + e.getMessage());
-            e.printStackTrace();
         }
+    }
+
+    /**
+     * 获取世界中的所有玩家作为候选观看者
+     */
+    private static List<FrameViewer> collectViewers(World world) {
+        List<FrameViewer> viewers = new ArrayList<>();
+        for (Player player : world.getPlayers()) {
+            viewers.add(new PlayerFrameViewer(player));
+        }
+        return viewers;
+    }
 
-        // 移动到下一帧
-        currentFrameIndex++;
+    /**
+     * 移除已关闭的视频流
+     */
+    private void removeClosedStreams() {
+        streams.values().removeIf(VideoStream::isClosed);
     }
 
     /**
-     * 将 BufferedImage 转换为 Palette 数组
+     * 将 BufferedImage 转换为帧缓冲区
+     * 由预取线程调用，不访问任何实例状态
+     * 常见的图片类型直接读取底层像素数组，其他类型一次性读取整帧像素
+     *
+     * @param image 帧图片，尺寸需与输出缓冲区一致
+     * @param rgb   像素读取缓冲区，长度至少为 width * height
+     * @param out   输出帧缓冲区
      */
-    private Palette[][] convertImageToPalette(BufferedImage image) {
+    static void convertImageToPalette(BufferedImage image, int[] rgb, FrameBuffer out) {
         int width = image.getWidth();
         int height = image.getHeight();
-        Palette[][] frameData = new Palette[width][height];
-
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                int rgb = image.getRGB(x, y);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-                frameData[x][y] = ColorQuantizer.quantize(r, g, b);
+
+        Raster raster = image.getRaster();
+        if (raster.getParent() == null && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0) {
+            DataBuffer buffer = raster.getDataBuffer();
+            SampleModel model = raster.getSampleModel();
+
+            // ImageIO 读取的 RGB PNG 通常为 TYPE_3BYTE_BGR
+            if (image.getType() == BufferedImage.TYPE_3BYTE_BGR && buffer instanceof DataBufferByte
+                && model instanceof PixelInterleavedSampleModel
+                && ((PixelInterleavedSampleModel) model).getScanlineStride() == width * 3) {
+                ByteBuffer pixels = ByteBuffer.wrap(((DataBufferByte) buffer).getData());
+                ColorQuantizer.quantizePacked(pixels, width * 3, width, height, true, 0, out);
+                return;
+            }
+
+            if (image.getType() == BufferedImage.TYPE_INT_RGB && buffer instanceof DataBufferInt
+                && model instanceof SinglePixelPackedSampleModel
+                && ((SinglePixelPackedSampleModel) model).getScanlineStride() == width) {
+                ColorQuantizer.quantizeFrame(((DataBufferInt) buffer).getData(), width, height, out);
+                return;
             }
         }
 
-        return frameData;
+        // 一次性读取整帧像素，避免逐像素调用 getRGB
+        image.getRGB(0, 0, width, height, rgb, 0, width);
+        ColorQuantizer.quantizeFrame(rgb, width, height, out);
+    }
+
+    /**
+     * 停止指定屏幕的播放
+     * 已放置但尚未写入的方块会在之后的 tick 中继续写入，画面保留最后一帧
+     *
+     * @param screenName 屏幕名称
+     */
+    public void stop(String screenName) {
+        Screen screen = screens.get(screenName);
+        if (screen != null) {
+            screen.stop();
+            removeClosedStreams();
+        }
     }
 
     /**
-     * 停止播放
+     * 停止所有屏幕的播放
      */
-    public void stop() {
+    public void stopAll() {
+        for (Screen screen : screens.values()) {
+            screen.stop();
+        }
+        removeClosedStreams();
+    }
+
+    /**
+     * 清除指定屏幕的播放区域，清除完成后屏幕被移除
+     * 清除在之后的 tick 中按时间预算分批完成
+     *
+     * @param screenName 屏幕名称
+     */
+    public void clear(String screenName) {
+        Screen screen = screens.get(screenName);
+        if (screen != null) {
+            screen.clear();
+            removeClosedStreams();
+            startTickTask();
+        }
+    }
+
+    /**
+     * 立即取消 tick 任务，未写入的方块将被丢弃
+     */
+    private void cancelTickTask() {
         if (playTask != null) {
             playTask.cancel();
             playTask = null;
         }
-
-        isPlaying = false;
-        currentFrameIndex = 0;
-
-        // 不清除方块，保留最后一帧
     }
 
     /**
-     * 完全清除播放区域
+     * 关闭管理器，取消所有任务并释放所有屏幕
      */
-    public void clear() {
-        stop();
-        if (blockPlacer != null) {
-            blockPlacer.clear();
-            blockPlacer = null;
+    public void shutdown() {
+        cancelTickTask();
+        for (Screen screen : screens.values()) {
+            screen.discard();
+        }
+        screens.clear();
+        flushOrder.clear();
+        for (VideoStream stream : streams.values()) {
+            stream.close();
         }
-        frames = null;
-        frameFiles = null;
+        streams.clear();
+    }
+
+    /**
+     * 获取屏幕，不存在时返回 null
+     */
+    public Screen getScreen(String screenName) {
+        return screens.get(screenName);
     }
 
     /**
-     * 检查是否正在播放
+     * 获取所有屏幕
      */
-    public boolean isPlaying() {
-        return isPlaying;
+    public Collection<Screen> getScreens() {
+        return Collections.unmodifiableCollection(screens.values());
     }
 
     /**
-     * 获取当前帧索引
+     * 获取播放调节器
      */
-    public int getCurrentFrameIndex() {
-        return currentFrameIndex;
+    public PlaybackGovernor getGovernor() {
+        return governor;
     }
 
     /**
-     * 获取总帧数
+     * 获取正在播放的视频流
      */
-    public int getTotalFrames() {
-        return frameFiles != null ? frameFiles.size() : 0;
+    public Collection<VideoStream> getStreams() {
+        return Collections.unmodifiableCollection(streams.values());
     }
 
     /**
-     * 获取方块放置器
+     * 打开帧来源
      */
-    public BlockPlacer getBlockPlacer() {
-        return blockPlacer;
+    private interface SourceOpener {
+        List<FrameSource> open() throws Exception;
     }
-}
\ No newline at end of file
+}
@@ -16,12 +16,17 @@ public class VideoPlayerMC extends JavaPlugin {
     }
 
     private VideoManager videoManager;
+    private VideoCatalog catalog;
+    private ProcessingScheduler processingScheduler;
 
     @Override
     public void onEnable() {
         // 设置无头模式，避免 AWT 尝试连接 X11 显示服务器
         System.setProperty("java.awt.headless", "true");
 
+        // 保存默认配置文件
+        saveDefaultConfig();
+
         // 创建视频目录
         File videoDir = new File(getDataFolder(), "videos");
         if (!videoDir.exists()) {
@@ -36,14 +41,72 @@ public class VideoPlayerMC extends JavaPlugin {
             getLogger().info("创建处理后的视频目录: " + processedDir.getAbsolutePath());
         }
 
+        // 加载调色板，配置无效时使用默认的 16 种混凝土
+        try {
+            Palette.configure(Palette.parse(getConfig().getStringList("palette.blocks")));
+        } catch (IllegalArgumentException e) {
+            getLogger().warning(e.getMessage() + "，使用默认的 16 种混凝土");
+        }
+
+        // 初始化颜色查找表，优先映射磁盘缓存
+        long lutStart = System.currentTimeMillis();
+        ColorMetric metric = ColorMetric.WEIGHTED_RGB;
+        try {
+            metric = ColorMetric.parse(getConfig().getString("quantizer.distance", metric.getConfigName()));
+        } catch (IllegalArgumentException e) {
+            getLogger().warning(e.getMessage() + "，使用 " + metric.getConfigName());
+        }
+        int lookupBits = getConfig().getInt("quantizer.lookup-bits", 8);
+        try {
+            ColorQuantizer.configure(new File(getDataFolder(), "cache"), lookupBits, metric);
+        } catch (IllegalArgumentException e) {
+            getLogger().warning(e.getMessage() + "，使用完整查找表");
+            ColorQuantizer.configure(new File(getDataFolder(), "cache"), 8, metric);
+        }
+        ColorQuantizer.initialize();
+        getLogger().info((ColorQuantizer.isLoadedFromCache() ? "颜色查找表已从缓存加载" : "颜色查找表已生成并写入缓存")
+            + "（" + Palette.size() + " 种方块，" + metric.getConfigName() + "，" + ColorQuantizer.getLookupBits()
+            + " 位，耗时 " + (System.currentTimeMillis() - lutStart) + "ms）");
+
+        // 读取预处理视频目录，目录文件不存在时扫描 processed 目录生成
+        catalog = new VideoCatalog(processedDir, getLogger());
+        catalog.load();
+
+        // 读取地图模式屏幕使用的地图编号
+        MapIdStore.configure(getDataFolder(), getLogger());
+
         // 初始化视频管理器
         videoManager = new VideoManager(this);
-        VideoProcessor videoProcessor = new VideoProcessor();
+        boolean dither = "ordered".equalsIgnoreCase(getConfig().getString("quantizer.dither", "none"));
+        VideoProcessor videoProcessor = new VideoProcessor(
+            dither ? getConfig().getInt("quantizer.dither-strength", ColorQuantizer.DEFAULT_DITHER_STRENGTH) : 0,
+            getConfig().getInt("processing.workers", 0),
+            getConfig().getDouble("quantizer.hysteresis", 0),
+            getConfig().getDouble("quantizer.temporal-filter", 0),
+            getConfig().getInt("quantizer.temporal-filter-threshold", 24));
+        processingScheduler = new ProcessingScheduler(this, videoProcessor,
+            getConfig().getInt("processing.max-jobs", 1),
+            getConfig().getInt("processing.max-queued", 16),
+            getConfig().getDoubleList("processing.variants"));
+
+        // 预处理的默认分辨率
+        Resolution resolution = VideoProcessor.getDefaultResolution();
+        try {
+            resolution = Resolution.parse(getConfig().getString("processing.resolution", resolution.toString()));
+        } catch (IllegalArgumentException e) {
+            getLogger().warning(e.getMessage() + "，使用默认分辨率 " + resolution);
+        }
 
         // 注册命令
         getCommand("playvideo").setExecutor(new PlayVideoCommand(this, videoManager));
-        getCommand("processvideo").setExecutor(new ProcessVideoCommand(this, videoProcessor));
-        getCommand("playfile").setExecutor(new PlayFileCommand(this, videoManager));
+        getCommand("processvideo").setExecutor(new ProcessVideoCommand(this, processingScheduler, resolution));
+        PlayFileCommand playFileCommand = new PlayFileCommand(this, videoManager, catalog);
+        getCommand("playfile").setExecutor(playFileCommand);
+        getCommand("playfile").setTabCompleter(playFileCommand);
+        getCommand("videocontrol").setExecutor(new VideoControlCommand(this, videoManager));
+        getCommand("importframes").setExecutor(new ImportFramesCommand(this, processingScheduler));
+        getCommand("videojobs").setExecutor(new VideoJobsCommand(processingScheduler));
+        getCommand("videostats").setExecutor(new VideoStatsCommand(videoManager, videoProcessor));
 
         getLogger().info("VideoPlayerMC 已启用！");
         getLogger().info("使用 /processvideo <视频文件> [名称] 预处理视频");
@@ -53,9 +116,14 @@ public class VideoPlayerMC extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        // 取消所有预处理任务
+        if (processingScheduler != null) {
+            processingScheduler.shutdown();
+        }
+
         // 停止所有播放
         if (videoManager != null) {
-            videoManager.stop();
+            videoManager.shutdown();
         }
 
         getLogger().info("VideoPlayerMC 已禁用！");
@@ -67,4 +135,11 @@ public class VideoPlayerMC extends JavaPlugin {
     public VideoManager getVideoManager() {
         return videoManager;
     }
+
+    /**
+     * 获取预处理视频目录
+     */
+    public VideoCatalog getCatalog() {
+        return catalog;
+    }
 }
\ No newline at end of file
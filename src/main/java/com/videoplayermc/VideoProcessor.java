@@ -1,26 +1,61 @@
 package com.videoplayermc;
 
+import org.bytedeco.javacv.FFmpegFrameFilter;
 import org.bytedeco.javacv.FFmpegFrameGrabber;
 import org.bytedeco.javacv.Frame;
-import org.bytedeco.javacv.Java2DFrameConverter;
+import org.bytedeco.javacv.FrameGrabber;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.imageio.ImageIO;
 
 /**
  * 视频处理器
  * 使用 FFmpeg 解码视频并提取帧数据
- * 保存每一帧为 PNG 图片
+ * 输出分辨率可以为每个任务单独指定，并可在同一次解码中生成低分辨率版本
+ * 缩放、垂直翻转和 RGB24 格式转换由 FFmpeg 滤镜完成，量化器直接读取帧的像素缓冲区，
+ * 不再经过 BufferedImage
+ * 量化后写入帧数据文件，或保存每一帧为 PNG 图片
+ * 处理器不保存每次处理的状态（解码器、滤镜和缓冲区都在方法内创建），可被多个任务同时使用
  */
 public class VideoProcessor {
 
+    // 默认分辨率（方块数），可以为每个任务单独指定
     private static final int TARGET_WIDTH = 114;
     private static final int TARGET_HEIGHT = 64;
     private static final int TARGET_FPS = 20;
 
-    private final Java2DFrameConverter frameConverter;
+    // 低分辨率版本文件名中名称与分辨率之间的分隔符，例如 myvideo@57x32.vmfr
+    static final String VARIANT_SEPARATOR = "@";
+
+    // 分段处理时每段的最短时长（微秒），更短的视频不分段
+    private static final long MIN_SEGMENT_MICROS = 10_000_000L;
+
+    // 有序抖动强度，0 表示不抖动
+    private final int ditherStrength;
+
+    // 稳定编码：颜色阈值、时域预滤波比例和阈值，见 HysteresisEncoder
+    private final double hysteresis;
+    private final double filterStrength;
+    private final int filterThreshold;
+
+    // 并行处理的工作线程数
+    private final int workers;
+
+    // 量化每帧（主分辨率）的耗时，所有任务共用
+    private final LatencyHistogram quantizeLatency = new LatencyHistogram();
 
     static {
         // 设置无头模式，避免 X11 依赖
@@ -28,11 +63,368 @@ public class VideoProcessor {
     }
 
     public VideoProcessor() {
-        this.frameConverter = new Java2DFrameConverter();
+        this(0, 1);
+    }
+
+    /**
+     * @param ditherStrength 有序抖动强度，0 表示不抖动
+     * @param workers 并行处理的工作线程数，0 表示使用一半的 CPU 核心数（见 {@link #defaultWorkers}）
+     */
+    public VideoProcessor(int ditherStrength, int workers) {
+        this(ditherStrength, workers, 0, 0, 0);
+    }
+
+    /**
+     * @param ditherStrength 有序抖动强度，0 表示不抖动
+     * @param workers 并行处理的工作线程数，0 表示使用一半的 CPU 核心数（见 {@link #defaultWorkers}）
+     * @param hysteresis 稳定编码的颜色阈值（距离公式的单位），0 表示不使用
+     * @param filterStrength 时域预滤波中上一帧的比例（0 - 1），0 表示不滤波
+     * @param filterThreshold 时域预滤波只处理变化不超过该值的像素（RGB 分量单位）
+     */
+    public VideoProcessor(int ditherStrength, int workers, double hysteresis, double filterStrength, int filterThreshold) {
+        this.ditherStrength = Math.max(0, ditherStrength);
+        this.hysteresis = Math.max(0, hysteresis);
+        this.filterStrength = Math.max(0, Math.min(1, filterStrength));
+        this.filterThreshold = Math.max(0, filterThreshold);
+        this.workers = workers > 0 ? workers : defaultWorkers();
         // 初始化颜色量化器
         ColorQuantizer.initialize();
     }
 
+    /**
+     * 处理视频文件，量化后直接写入帧数据文件（.vmfr）
+     * 每一帧离开解码器后立即量化并追加到文件，不再生成中间 PNG 图片，
+     * 播放时也无需再次解码和量化
+     *
+     * @param videoPath 视频文件路径
+     * @param outputFile 输出的帧数据文件
+     * @param progressListener 进度监听器（可选）
+     * @return 写入的帧数量
+     * @throws Exception 如果处理或写入失败
+     */
+    public int processVideo(String videoPath, File outputFile, ProgressListener progressListener) throws Exception {
+        return processVideo(videoPath, outputFile, null, progressListener);
+    }
+
+    /**
+     * 按默认分辨率处理视频文件，并统计每帧的方块变化
+     *
+     * @see #processVideo(String, File, Resolution, List, ChurnCounter, ProgressListener)
+     */
+    public int processVideo(String videoPath, File outputFile, ChurnCounter churn, ProgressListener progressListener) throws Exception {
+        return processVideo(videoPath, outputFile, getDefaultResolution(), Collections.emptyList(), churn, progressListener);
+    }
+
+    /**
+     * 处理视频文件，量化后直接写入帧数据文件（.vmfr），并统计每帧的方块变化
+     * 分辨率记录在帧数据文件头中；低分辨率版本在同一次解码中生成，
+     * 写入 {@link #variantFile(File, Resolution)} 指定的文件，帧数与主文件相同
+     * 启用抖动时同时按不抖动的方式量化一次，统计两种方式的变化像素数（只统计主文件）
+     * 启用稳定编码时同时按不经过稳定编码的方式量化一次，统计节省的方块写入
+     * 有多个工作线程且视频足够长时，按关键帧分段并行处理
+     *
+     * @param videoPath 视频文件路径
+     * @param outputFile 输出的帧数据文件
+     * @param resolution 输出分辨率
+     * @param variants 低分辨率版本（可为空）
+     * @param churn 方块变化统计（可选），尺寸需与输出分辨率一致
+     * @param progressListener 进度监听器（可选）
+     * @return 写入的帧数量
+     * @throws Exception 如果处理或写入失败
+     */
+    public int processVideo(String videoPath, File outputFile, Resolution resolution, List<Resolution> variants,
+                            ChurnCounter churn, ProgressListener progressListener) throws Exception {
+        File videoFile = checkVideoFile(videoPath);
+
+        Resolution[] sizes = new Resolution[variants.size() + 1];
+        File[] outputs = new File[sizes.length];
+        sizes[0] = resolution;
+        outputs[0] = outputFile;
+        for (int i = 1; i < sizes.length; i++) {
+            sizes[i] = variants.get(i - 1);
+            outputs[i] = variantFile(outputFile, sizes[i]);
+        }
+
+        // 所有工作线程共享的进度计数
+        AtomicInteger processed = new AtomicInteger();
+        Runnable onFrame = () -> {
+            int count = processed.incrementAndGet();
+            if (progressListener != null) {
+                progressListener.onProgress(count, resolution.getHeight());
+            }
+        };
+
+        // 先写入临时文件，完成后再替换，避免播放到未写完的文件
+        File[] tempFiles = new File[sizes.length];
+        FrameWriter[] writers = new FrameWriter[sizes.length];
+        int frameCount;
+        try {
+            for (int i = 0; i < sizes.length; i++) {
+                tempFiles[i] = new File(outputs[i].getParentFile(), outputs[i].getName() + ".tmp");
+                writers[i] = new FrameWriter(tempFiles[i], sizes[i].getWidth(), sizes[i].getHeight());
+            }
+
+            // 稳定编码的结果依赖之前所有帧，分段后各段编码状态不同，只能单线程处理才能保证输出一致
+            long[] boundaries = workers > 1 && !isStabilizing()
+                ? findSegmentBoundaries(videoFile, workers) : new long[]{Long.MIN_VALUE, Long.MAX_VALUE};
+            if (boundaries.length <= 2) {
+                processSegment(videoFile, Long.MIN_VALUE, Long.MAX_VALUE, sizes, writers, churn, onFrame, null);
+            } else {
+                processSegments(videoFile, boundaries, outputFile, sizes, writers, churn, onFrame);
+            }
+            frameCount = writers[0].getFrameCount();
+            closeAll(writers);
+        } catch (Exception e) {
+            try {
+                closeAll(writers);
+            } catch (IOException ignored) {
+                // 临时文件随后删除
+            }
+            for (File tempFile : tempFiles) {
+                if (tempFile != null) {
+                    tempFile.delete();
+                }
+            }
+            throw e;
+        }
+
+        for (int i = 0; i < sizes.length; i++) {
+            Files.move(tempFiles[i].toPath(), outputs[i].toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return frameCount;
+    }
+
+    /**
+     * 关闭所有写入器，抛出第一个关闭失败的异常
+     */
+    private static void closeAll(FrameWriter[] writers) throws IOException {
+        IOException failure = null;
+        for (FrameWriter writer : writers) {
+            if (writer == null) {
+                continue;
+            }
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * 处理一段视频（时间戳在 [start, end) 内的帧），量化后写入各分辨率的写入器
+     *
+     * @param videoFile 视频文件
+     * @param start 起始时间戳（微秒，包含），Long.MIN_VALUE 表示从头开始
+     * @param end 结束时间戳（微秒，不包含），Long.MAX_VALUE 表示到结尾
+     * @param sizes 输出分辨率，第一个为主文件
+     * @param writers 与输出分辨率对应的帧写入器
+     * @param churn 主文件的方块变化统计（可选）
+     * @param onFrame 主文件每写入一帧调用一次
+     * @param log 分段开头选取的源帧记录（可选）
+     */
+    private void processSegment(File videoFile, long start, long end, Resolution[] sizes, FrameWriter[] writers,
+                                ChurnCounter churn, Runnable onFrame, SegmentLog log) throws Exception {
+        FrameBuffer[] frameBuffers = new FrameBuffer[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            frameBuffers[i] = new FrameBuffer(sizes[i].getWidth(), sizes[i].getHeight());
+        }
+        FrameBuffer plainBuffer = ditherStrength > 0 && churn != null
+            ? new FrameBuffer(sizes[0].getWidth(), sizes[0].getHeight()) : null;
+
+        // 稳定编码器依赖之前的帧，每个输出分辨率一个（启用时不分段）
+        HysteresisEncoder[] encoders = new HysteresisEncoder[sizes.length];
+        if (isStabilizing()) {
+            for (int i = 0; i < sizes.length; i++) {
+                encoders[i] = new HysteresisEncoder(sizes[i].getWidth(), sizes[i].getHeight(),
+                    hysteresis, filterStrength, filterThreshold);
+            }
+        }
+        FrameBuffer rawBuffer = isStabilizing() && churn != null
+            ? new FrameBuffer(sizes[0].getWidth(), sizes[0].getHeight()) : null;
+
+        grabFrames(videoFile, start, end, sizes, log, (output, frame) -> {
+            // 滤镜输出已翻转的 RGB24，直接从帧的像素缓冲区量化
+            ByteBuffer pixels = (ByteBuffer) frame.image[0];
+            FrameBuffer frameBuffer = frameBuffers[output];
+            int width = sizes[output].getWidth();
+            int height = sizes[output].getHeight();
+            long quantizeStart = System.nanoTime();
+            if (encoders[output] != null) {
+                encoders[output].encode(pixels, frame.imageStride, false, ditherStrength, frameBuffer);
+            } else {
+                ColorQuantizer.quantizePacked(pixels, frame.imageStride, width, height, false, ditherStrength, frameBuffer);
+            }
+            if (output == 0) {
+                quantizeLatency.record(System.nanoTime() - quantizeStart);
+            }
+            writers[output].writeFrame(frameBuffer);
+
+            if (output != 0) {
+                return;
+            }
+
+            if (churn != null) {
+                FrameBuffer plain = frameBuffer;
+                if (plainBuffer != null) {
+                    ColorQuantizer.quantizePacked(pixels, frame.imageStride, width, height, false, 0, plainBuffer);
+                    plain = plainBuffer;
+                }
+                FrameBuffer raw = frameBuffer;
+                if (rawBuffer != null) {
+                    ColorQuantizer.quantizePacked(pixels, frame.imageStride, width, height, false, ditherStrength, rawBuffer);
+                    raw = rawBuffer;
+                }
+                churn.record(frameBuffer, plain, raw);
+            }
+
+            // 通知进度
+            onFrame.run();
+        });
+    }
+
+    /**
+     * 并行处理多段视频，再按顺序合并
+     * 每段使用独立的解码器，从该段起点的关键帧开始解码，结果写入临时的分段文件；
+     * 合并时逐帧重新写入，并跳过与上一段最后选取的源帧重复的帧（见 {@link SegmentLog}），
+     * 输出与单线程处理完全相同（启用稳定编码时不分段）
+     * 分段边界处相邻两帧的方块变化不计入统计
+     */
+    private void processSegments(File videoFile, long[] boundaries, File outputFile, Resolution[] sizes,
+                                 FrameWriter[] writers, ChurnCounter churn, Runnable onFrame) throws Exception {
+        int segments = boundaries.length - 1;
+        File[][] parts = new File[segments][sizes.length];
+        ChurnCounter[] counters = new ChurnCounter[segments];
+        SegmentLog[] logs = new SegmentLog[segments];
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, segments), runnable -> {
+            Thread thread = new Thread(runnable, "VideoProcessor-Worker");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        try {
+            List<Future<?>> futures = new ArrayList<>(segments);
+            for (int i = 0; i < segments; i++) {
+                int segment = i;
+                for (int o = 0; o < sizes.length; o++) {
+                    parts[i][o] = new File(outputFile.getParentFile(), outputFile.getName() + ".part" + i + "-" + o);
+                }
+                counters[i] = churn != null ? new ChurnCounter(sizes[0].getWidth(), sizes[0].getHeight()) : null;
+                logs[i] = new SegmentLog();
+                futures.add(executor.submit(() -> {
+                    FrameWriter[] partWriters = new FrameWriter[sizes.length];
+                    try {
+                        for (int o = 0; o < sizes.length; o++) {
+                            // 中间文件只用于合并，不压缩
+                            partWriters[o] = new FrameWriter(parts[segment][o], sizes[o].getWidth(), sizes[o].getHeight(),
+                                FrameSerializer.DEFAULT_KEYFRAME_INTERVAL, false);
+                        }
+                        processSegment(videoFile, boundaries[segment], boundaries[segment + 1], sizes, partWriters,
+                            counters[segment], onFrame, logs[segment]);
+                    } finally {
+                        closeAll(partWriters);
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : e;
+                }
+            }
+
+            // 单线程处理会跳过与之前选取的源帧序号重复的帧，各段开头需要跳过同样的输出帧
+            int[] skipped = new int[segments];
+            long previousLast = -1;
+            for (int i = 0; i < segments; i++) {
+                skipped[i] = logs[i].skippedFrames(previousLast);
+                previousLast = Math.max(previousLast, logs[i].lastSourceFrame);
+            }
+
+            // 按顺序合并各段
+            for (int o = 0; o < sizes.length; o++) {
+                FrameBuffer frame = new FrameBuffer(sizes[o].getWidth(), sizes[o].getHeight());
+                for (int i = 0; i < segments; i++) {
+                    try (MappedFrameSource source = new MappedFrameSource(parts[i][o])) {
+                        for (int f = skipped[i]; f < source.getFrameCount(); f++) {
+                            source.readFrame(f, frame);
+                            writers[o].writeFrame(frame);
+                        }
+                    }
+                }
+            }
+            if (churn != null) {
+                for (ChurnCounter counter : counters) {
+                    churn.merge(counter);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            for (File[] segmentParts : parts) {
+                for (File part : segmentParts) {
+                    if (part != null) {
+                        part.delete();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 按关键帧划分视频
+     * 在视频时长上均匀取点，每个点之后的第一个关键帧作为分段起点
+     *
+     * @param videoFile 视频文件
+     * @param segments 最多的分段数
+     * @return 分段边界（微秒），第一个为 Long.MIN_VALUE，最后一个为 Long.MAX_VALUE
+     */
+    private long[] findSegmentBoundaries(File videoFile, int segments) throws Exception {
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(Long.MIN_VALUE);
+
+        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(videoFile)) {
+            grabber.setImageMode(FrameGrabber.ImageMode.RAW);
+            grabber.start();
+
+            long duration = grabber.getLengthInTime();
+            int count = duration > 0 ? (int) Math.min(segments, duration / MIN_SEGMENT_MICROS) : 1;
+            long last = Long.MIN_VALUE;
+            for (int i = 1; i < count; i++) {
+                grabber.setTimestamp(duration * i / count);
+
+                // 只读取关键帧，不转换像素
+                Frame keyframe = grabber.grabFrame(false, true, false, true, false);
+                if (keyframe == null) {
+                    break;
+                }
+                if (keyframe.timestamp > last) {
+                    last = keyframe.timestamp;
+                    boundaries.add(last);
+                }
+            }
+
+            grabber.stop();
+        }
+
+        boundaries.add(Long.MAX_VALUE);
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
     /**
      * 处理视频文件并保存每一帧为 PNG 图片
      *
@@ -44,92 +436,246 @@ public class VideoProcessor {
      * @throws Exception 如果处理或保存失败
      */
     public int saveFramesAsImages(String videoPath, File outputDir, String name, ProgressListener progressListener) throws Exception {
-        File videoFile = new File(videoPath);
-        if (!videoFile.exists()) {
-            throw new IllegalArgumentException("视频文件不存在: " + videoPath);
-        }
-
         // 创建输出目录
         File frameDir = new File(outputDir, name);
         if (!frameDir.exists()) {
             frameDir.mkdirs();
         }
 
-        int savedFrameCount = 0;
+        File videoFile = checkVideoFile(videoPath);
+        int[] savedFrameCount = {0};
+        int[] rgb = new int[TARGET_WIDTH * TARGET_HEIGHT];
+        grabFrames(videoFile, Long.MIN_VALUE, Long.MAX_VALUE, new Resolution[]{getDefaultResolution()}, null, (output, frame) -> {
+            // 保存当前帧为 PNG
+            File outputFile = new File(frameDir, String.format("frame_%05d.png", savedFrameCount[0]));
+            saveFrameAsImage(frame, rgb, outputFile);
+            savedFrameCount[0]++;
 
-        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(videoFile)) {
-            // 设置 FFmpeg 输出分辨率，让 FFmpeg 自动缩放
-            grabber.setImageWidth(TARGET_WIDTH);
-            grabber.setImageHeight(TARGET_HEIGHT);
+            // 通知进度
+            if (progressListener != null) {
+                progressListener.onProgress(savedFrameCount[0], frame.imageHeight > 0 ? (int)frame.imageHeight : TARGET_HEIGHT);
+            }
+        });
 
-            // 不设置像素格式，让 Java2DFrameConverter 自动处理
-            // grabber.setPixelFormat(0);
+        return savedFrameCount[0];
+    }
+
+    /**
+     * 检查视频文件是否存在
+     */
+    private static File checkVideoFile(String videoPath) {
+        File videoFile = new File(videoPath);
+        if (!videoFile.exists()) {
+            throw new IllegalArgumentException("视频文件不存在: " + videoPath);
+        }
+        return videoFile;
+    }
 
+    /**
+     * 解码视频中时间戳在 [start, end) 内的帧，并按 20fps 的输出时刻重新采样
+     * 是否提取只取决于帧的时间戳，与从哪里开始解码无关，分段处理的结果与整体处理相同
+     * 不需要的帧只解码，不进行缩放和像素格式转换
+     * 每个输出分辨率使用一个滤镜，交给处理器的帧为经过滤镜的 RGB24 帧（该分辨率，已垂直翻转）
+     *
+     * @param videoFile 视频文件
+     * @param start 起始时间戳（微秒，包含），Long.MIN_VALUE 表示从头开始
+     * @param end 结束时间戳（微秒，不包含），Long.MAX_VALUE 表示到结尾
+     * @param sizes 输出分辨率
+     * @param log 分段开头选取的源帧记录（可选）
+     * @param handler 每个提取出的帧的处理器
+     * @throws Exception 如果解码或处理失败
+     */
+    private void grabFrames(File videoFile, long start, long end, Resolution[] sizes, SegmentLog log,
+                            FrameHandler handler) throws Exception {
+        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(videoFile)) {
+            // 保留解码器原生的像素格式，缩放、翻转和格式转换全部交给滤镜，
+            // 避免先在原始分辨率转换为 BGR24
+            grabber.setImageMode(FrameGrabber.ImageMode.RAW);
             grabber.start();
 
-            double videoFps = grabber.getVideoFrameRate();
-            long frameInterval = (long) (videoFps / TARGET_FPS);
+            if (start != Long.MIN_VALUE) {
+                // 从起点处的关键帧开始解码
+                grabber.setTimestamp(start);
+            }
 
-            // 如果视频帧率小于目标帧率，逐帧处理
-            if (frameInterval < 1) {
-                frameInterval = 1;
+            double videoFps = grabber.getVideoFrameRate();
+            if (!(videoFps > 0)) {
+                videoFps = TARGET_FPS;
+            }
+            if (log != null && start != Long.MIN_VALUE) {
+                log.boundarySource = sourceFrameAt(start, videoFps);
             }
 
-            long sourceFrameCount = 0;
-            Frame frame;
+            FFmpegFrameFilter[] filters = new FFmpegFrameFilter[sizes.length];
+            try {
+                for (int i = 0; i < sizes.length; i++) {
+                    filters[i] = new FFmpegFrameFilter(filterGraph(sizes[i]), grabber.getImageWidth(), grabber.getImageHeight());
+                    filters[i].setPixelFormat(grabber.getPixelFormat());
+                    filters[i].setFrameRate(videoFps);
+                    filters[i].start();
+                }
+
+                long lastSourceFrame = -1;
+                Frame frame;
+                while ((frame = grabber.grabImage()) != null) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException("视频处理已取消");
+                    }
+
+                    long timestamp = frame.timestamp;
+                    if (timestamp >= end) {
+                        break;
+                    }
+                    if (timestamp < start) {
+                        continue;
+                    }
+
+                    // 由时间戳换算源帧序号，时间戳抖动导致序号重复时只取第一帧
+                    long sourceFrame = sourceFrameAt(timestamp, videoFps);
+                    if (sourceFrame <= lastSourceFrame) {
+                        continue;
+                    }
+                    lastSourceFrame = sourceFrame;
 
-            while ((frame = grabber.grabImage()) != null) {
-                // 按 20fps 提取帧
-                if (sourceFrameCount % frameInterval == 0) {
-                    // 保存当前帧为 PNG
-                    File outputFile = new File(frameDir, String.format("frame_%05d.png", savedFrameCount));
-                    saveFrameAsImage(frame, outputFile);
-                    savedFrameCount++;
+                    // 该源帧显示期间经过的 20fps 输出时刻数：高帧率视频中大部分为 0，
+                    // 低帧率视频中可能大于 1（重复输出以保持播放速度）
+                    // 只有被选中的帧才送入滤镜进行缩放和格式转换
+                    int repeat = (int) (firstTargetFrame(sourceFrame + 1, videoFps) - firstTargetFrame(sourceFrame, videoFps));
+                    if (log != null) {
+                        log.record(sourceFrame, Math.max(0, repeat));
+                    }
+                    if (repeat <= 0) {
+                        continue;
+                    }
 
-                    // 通知进度
-                    if (progressListener != null) {
-                        progressListener.onProgress(savedFrameCount, frame.imageHeight > 0 ? (int)frame.imageHeight : TARGET_HEIGHT);
+                    for (int output = 0; output < sizes.length; output++) {
+                        filters[output].push(frame);
+                        Frame filtered;
+                        while ((filtered = filters[output].pull()) != null) {
+                            if (isTargetFrame(filtered, sizes[output])) {
+                                for (int i = 0; i < repeat; i++) {
+                                    handler.onFrame(output, filtered);
+                                }
+                            }
+                        }
+                    }
+                }
+            } finally {
+                for (FFmpegFrameFilter filter : filters) {
+                    if (filter != null) {
+                        filter.close();
                     }
                 }
-                sourceFrameCount++;
             }
 
             grabber.stop();
         }
+    }
+
+    /**
+     * 由时间戳（微秒）换算源帧序号，随时间戳单调不减
+     */
+    private static long sourceFrameAt(long timestamp, double videoFps) {
+        return Math.max(0, Math.round(timestamp * videoFps / 1_000_000.0));
+    }
+
+    /**
+     * 计算源帧开始显示时或之后的第一个输出帧序号
+     * 输出帧 n 的时刻为 n / 20 秒，显示的是该时刻正在显示的源帧；
+     * 相邻源帧的结果之差即为该源帧对应的输出帧数，各帧之间不会重复或遗漏
+     *
+     * @param sourceFrame 源帧序号
+     * @param videoFps 源视频帧率
+     * @return 输出帧序号
+     */
+    static long firstTargetFrame(long sourceFrame, double videoFps) {
+        return (long) Math.ceil(sourceFrame * TARGET_FPS / videoFps - 1e-9);
+    }
+
+    /**
+     * FFmpeg 滤镜：缩放到输出分辨率，垂直翻转（帧缓冲区 y = 0 对应画面底部），输出紧凑的 RGB24
+     */
+    private static String filterGraph(Resolution size) {
+        return "scale=" + size.getWidth() + ":" + size.getHeight() + ":flags=bilinear,vflip,format=rgb24";
+    }
+
+    /**
+     * 检查滤镜输出的帧是否为指定尺寸的 RGB24 帧
+     */
+    private static boolean isTargetFrame(Frame frame, Resolution size) {
+        return frame.image != null && frame.image.length > 0
+            && frame.imageWidth == size.getWidth() && frame.imageHeight == size.getHeight()
+            && frame.imageChannels == 3 && frame.imageDepth == Frame.DEPTH_UBYTE;
+    }
+
+    /**
+     * 获取量化每帧的耗时
+     */
+    public LatencyHistogram getQuantizeLatency() {
+        return quantizeLatency;
+    }
+
+    /**
+     * 检查是否启用有序抖动
+     */
+    public boolean isDithering() {
+        return ditherStrength > 0;
+    }
+
+    /**
+     * 检查是否启用稳定编码（颜色阈值或时域预滤波）
+     */
+    public boolean isStabilizing() {
+        return hysteresis > 0 || filterStrength > 0;
+    }
 
-        return savedFrameCount;
+    /**
+     * 默认的工作线程数：一半的 CPU 核心数
+     * 每个工作线程还会占用一个 FFmpeg 解码器，线程优先级只是提示（Linux 上的 HotSpot 默认忽略），
+     * 因此需要留出核心给服务器主线程
+     */
+    static int defaultWorkers() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    /**
+     * 获取并行处理的工作线程数
+     */
+    public int getWorkers() {
+        return workers;
     }
 
     /**
      * 保存单帧为 PNG 图片
+     * 帧已被滤镜翻转，图片中的行顺序与帧缓冲区一致
      */
-    private void saveFrameAsImage(Frame frame, File outputFile) throws IOException {
-        // 使用 Java2DFrameConverter 转换为 BufferedImage
-        BufferedImage image = frameConverter.convert(frame);
-
-        if (image != null) {
-            // 转换为 RGB 格式，确保是彩色图片
-            BufferedImage rgbImage = new BufferedImage(TARGET_WIDTH, TARGET_HEIGHT, BufferedImage.TYPE_INT_RGB);
-            for (int y = 0; y < TARGET_HEIGHT; y++) {
-                for (int x = 0; x < TARGET_WIDTH; x++) {
-                    int rgb = image.getRGB(x, y);
-                    rgbImage.setRGB(x, y, rgb);
-                }
-            }
+    private void saveFrameAsImage(Frame frame, int[] rgb, File outputFile) throws IOException {
+        unpackRgb24((ByteBuffer) frame.image[0], frame.imageStride, TARGET_WIDTH, TARGET_HEIGHT, rgb);
 
-            // 垂直翻转图像
-            BufferedImage flipped = new BufferedImage(TARGET_WIDTH, TARGET_HEIGHT, BufferedImage.TYPE_INT_RGB);
-            for (int y = 0; y < TARGET_HEIGHT; y++) {
-                for (int x = 0; x < TARGET_WIDTH; x++) {
-                    int flippedY = TARGET_HEIGHT - 1 - y;
-                    int rgb = rgbImage.getRGB(x, flippedY);
-                    flipped.setRGB(x, y, rgb);
-                }
-            }
-            image = flipped;
+        BufferedImage image = new BufferedImage(TARGET_WIDTH, TARGET_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, TARGET_WIDTH, TARGET_HEIGHT, rgb, 0, TARGET_WIDTH);
 
-            // 保存为 PNG
-            ImageIO.write(image, "PNG", outputFile);
+        // 保存为 PNG
+        ImageIO.write(image, "PNG", outputFile);
+    }
+
+    /**
+     * 将 RGB24 像素缓冲区展开为按行存储的 RGB 整数数组
+     *
+     * @param pixels 像素缓冲区
+     * @param stride 每行的字节数
+     * @param width  宽度
+     * @param height 高度
+     * @param out    输出数组，长度至少为 width * height
+     */
+    static void unpackRgb24(ByteBuffer pixels, int stride, int width, int height, int[] out) {
+        for (int y = 0; y < height; y++) {
+            int offset = y * stride;
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int p = offset + x * 3;
+                out[row + x] = (pixels.get(p) & 0xFF) << 16 | (pixels.get(p + 1) & 0xFF) << 8 | (pixels.get(p + 2) & 0xFF);
+            }
         }
     }
 
@@ -141,14 +687,81 @@ public class VideoProcessor {
     }
 
     /**
-     * 获取目标宽度
+     * 帧处理器接口
+     */
+    private interface FrameHandler {
+        void onFrame(int output, Frame frame) throws IOException;
+    }
+
+    /**
+     * 分段选取的源帧记录
+     * 分段从关键帧开始解码，不知道上一段最后选取的源帧；时间戳抖动时分段开头的帧可能与上一段最后的帧序号相同，
+     * 单线程处理会跳过这些帧。上一段选取的源帧序号都不超过分段起点对应的序号，
+     * 因此只需记录序号不超过它的帧及其输出帧数，合并时跳过与上一段重复的部分
+     */
+    private static final class SegmentLog {
+
+        // 分段起点对应的源帧序号，-1 表示从头开始
+        long boundarySource = -1;
+        // 序号不超过 boundarySource 的选取的源帧：{序号, 输出帧数}
+        final List<long[]> leading = new ArrayList<>();
+        long lastSourceFrame = -1;
+
+        void record(long sourceFrame, int repeat) {
+            if (sourceFrame <= boundarySource) {
+                leading.add(new long[]{sourceFrame, repeat});
+            }
+            lastSourceFrame = sourceFrame;
+        }
+
+        /**
+         * 获取开头需要跳过的输出帧数
+         *
+         * @param previousLast 之前各段最后选取的源帧序号
+         */
+        int skippedFrames(long previousLast) {
+            int skipped = 0;
+            for (long[] frame : leading) {
+                if (frame[0] > previousLast) {
+                    break;
+                }
+                skipped += (int) frame[1];
+            }
+            return skipped;
+        }
+    }
+
+    /**
+     * 获取低分辨率版本的帧数据文件
+     * 例如 myvideo.vmfr 的 57x32 版本为 myvideo@57x32.vmfr
+     *
+     * @param outputFile 主帧数据文件
+     * @param resolution 低分辨率版本的分辨率
+     */
+    public static File variantFile(File outputFile, Resolution resolution) {
+        String name = outputFile.getName();
+        if (name.endsWith(".vmfr")) {
+            name = name.substring(0, name.length() - ".vmfr".length());
+        }
+        return new File(outputFile.getParentFile(), name + VARIANT_SEPARATOR + resolution + ".vmfr");
+    }
+
+    /**
+     * 获取默认分辨率
+     */
+    public static Resolution getDefaultResolution() {
+        return new Resolution(TARGET_WIDTH, TARGET_HEIGHT);
+    }
+
+    /**
+     * 获取默认宽度
      */
     public static int getTargetWidth() {
         return TARGET_WIDTH;
     }
 
     /**
-     * 获取目标高度
+     * 获取默认高度
      */
     public static int getTargetHeight() {
         return TARGET_HEIGHT;
@@ -0,0 +1,106 @@
+package com.videoplayermc;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 播放统计命令处理器
+ * 命令格式: /videostats [屏幕名称|reset]
+ * 显示每个屏幕的帧数、方块写入数、缓冲区深度和各阶段耗时（解码、量化、比较、写入）
+ */
+public class VideoStatsCommand implements CommandExecutor {
+
+    private final VideoManager videoManager;
+    private final VideoProcessor videoProcessor;
+
+    public VideoStatsCommand(VideoManager videoManager, VideoProcessor videoProcessor) {
+        this.videoManager = videoManager;
+        this.videoProcessor = videoProcessor;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        // 检查权限
+        if (!sender.hasPermission("videoplayermc.play")) {
+            sender.sendMessage("§c你没有权限使用此命令！");
+            return true;
+        }
+
+        // 检查参数数量
+        if (args.length > 1) {
+            sender.sendMessage("§c用法: /videostats [屏幕名称|reset]");
+            return true;
+        }
+
+        if (args.length == 1 && args[0].equalsIgnoreCase("reset")) {
+            resetStats();
+            sender.sendMessage("§a播放统计已清空");
+            return true;
+        }
+
+        Collection<Screen> screens;
+        if (args.length == 1) {
+            Screen screen = videoManager.getScreen(args[0]);
+            if (screen == null) {
+                sender.sendMessage("§c屏幕不存在: " + args[0]);
+                return true;
+            }
+            screens = Collections.singletonList(screen);
+        } else {
+            screens = videoManager.getScreens();
+        }
+
+        PlaybackGovernor governor = videoManager.getGovernor();
+        sender.sendMessage("§e播放统计" + (governor.isEnabled()
+            ? String.format("§7（播放调节: %s，MSPT %.1fms）", governor.getLevel().getDisplayName(), governor.getLastMspt()) : ""));
+        if (screens.isEmpty()) {
+            sender.sendMessage("§7没有屏幕");
+        }
+
+        for (Screen screen : screens) {
+            long frames = screen.getFramesPlaced();
+            sender.sendMessage("§6" + screen.getName() + "§7: 放置 " + frames + " 帧，写入 " + screen.getBlocksWritten() + " 个方块"
+                + (frames > 0 ? String.format("（平均每帧 %.0f 个）", (double) screen.getBlocksWritten() / frames) : "")
+                + "，待写入 " + (screen.getSink() != null ? screen.getSink().getPendingCount() : 0) + " 个"
+                + "，观看者 " + screen.getViewerCount() + " 人" + (screen.isCulled() ? "（已暂停放置）" : ""));
+
+            VideoStream stream = screen.getStream();
+            if (stream != null) {
+                sender.sendMessage("§7  视频 " + stream.getName() + "（" + stream.getWidth() + "x" + stream.getHeight()
+                    + "）: 第 " + stream.getCurrentFrameIndex() + "/" + stream.getTotalFrames() + " 帧，缓冲 "
+                    + stream.getBufferedFrames() + " 帧，丢弃 " + stream.getDroppedFrames() + " 帧，欠载 " + stream.getStallCount() + " 次");
+                sender.sendMessage("§7  解码: " + stream.getDecodeLatency().format());
+                if (stream.getDiffLatency().getCount() > 0) {
+                    sender.sendMessage("§7  比较（预取）: " + stream.getDiffLatency().format());
+                }
+            }
+            sender.sendMessage("§7  比较（放置）: " + screen.getPlaceLatency().format());
+            sender.sendMessage("§7  写入: " + screen.getApplyLatency().format());
+        }
+
+        if (videoProcessor.getQuantizeLatency().getCount() > 0) {
+            sender.sendMessage("§7预处理量化: " + videoProcessor.getQuantizeLatency().format());
+        }
+        return true;
+    }
+
+    /**
+     * 清空所有屏幕、视频流和预处理的统计
+     */
+    private void resetStats() {
+        Set<VideoStream> streams = new HashSet<>(videoManager.getStreams());
+        for (Screen screen : videoManager.getScreens()) {
+            screen.resetStats();
+        }
+        for (VideoStream stream : streams) {
+            stream.resetStats();
+        }
+        videoProcessor.getQuantizeLatency().reset();
+    }
+}
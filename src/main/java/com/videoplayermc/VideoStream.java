@@ -0,0 +1,570 @@
+package com.videoplayermc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Logger;
+
+/**
+ * 视频流
+ * 一个视频的解码和播放时序，由所有播放该视频的屏幕共享
+ * 帧只预取和解码一次，每个到期的帧分发给所有订阅的屏幕，各屏幕的放置器各自持有一个引用
+ * 暂停、跳转和循环作用于整个视频流，订阅的屏幕保持同步
+ * 视频有低分辨率版本时，方块写入持续超出时间预算后切换到更小的版本，各屏幕随之缩小
+ * 所有屏幕都没有观看者时只推进播放时钟，停止预取和放置，有观看者后从播放时钟对应的帧继续
+ * 帧来源只在视频流自己的预取线程中读取和关闭，主线程替换预取器时不等待正在读取的帧
+ */
+public class VideoStream {
+
+    private final String key;
+    private final String name;
+    private final List<FrameSource> sources;
+    // 各版本的帧缓冲池，跳转、循环和重新有观看者时新的预取器沿用之前的帧缓冲区
+    private final FrameBufferPool[] pools;
+    private final int prefetchFrames;
+    private final Logger logger;
+    private final List<Screen> screens = new ArrayList<>();
+
+    // 当前使用的版本（sources 中的序号）
+    private FrameSource source;
+    private int sourceIndex;
+
+    // 连续超出写入预算多少 tick 后切换到更小的版本，0 表示不切换
+    private int downgradeTicks;
+    private int overBudgetTicks;
+
+    // 依次运行各预取器，最后关闭帧来源
+    private final ExecutorService decoder = FramePrefetcher.newDecodeExecutor();
+    private FramePrefetcher prefetcher;
+    private PresentationClock clock;
+    private FrameBuffer lastFrame;
+    private int currentFrameIndex;
+    private boolean looping;
+    private boolean closed;
+
+    // 播放调节器暂停了播放时钟
+    private boolean held;
+
+    // 播放统计
+    private long stallCount;
+    private long droppedFrames;
+    private final LatencyHistogram decodeLatency = new LatencyHistogram();
+    private final LatencyHistogram diffLatency = new LatencyHistogram();
+
+    /**
+     * @param key            视频流标识（帧数据的规范路径）
+     * @param name           视频名称
+     * @param source         帧来源，由视频流负责关闭
+     * @param prefetchFrames 预取帧数
+     * @param logger         日志记录器
+     */
+    public VideoStream(String key, String name, FrameSource source, int prefetchFrames, Logger logger) {
+        this(key, name, Collections.singletonList(source), prefetchFrames, logger);
+    }
+
+    /**
+     * @param key            视频流标识（帧数据的规范路径）
+     * @param name           视频名称
+     * @param sources        帧来源，第一个为完整分辨率，其余为帧数相同、按分辨率从大到小排列的低分辨率版本，
+     *                       全部由视频流负责关闭
+     * @param prefetchFrames 预取帧数
+     * @param logger         日志记录器
+     */
+    public VideoStream(String key, String name, List<FrameSource> sources, int prefetchFrames, Logger logger) {
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException("没有帧来源");
+        }
+        this.key = key;
+        this.name = name;
+        this.sources = new ArrayList<>(sources);
+        this.source = this.sources.get(0);
+        this.prefetchFrames = prefetchFrames;
+        this.pools = new FrameBufferPool[this.sources.size()];
+        this.logger = logger;
+    }
+
+    /**
+     * 设置连续超出写入预算多少 tick 后切换到更小的版本
+     *
+     * @param downgradeTicks tick 数，0 表示不切换
+     */
+    void setDowngradeTicks(int downgradeTicks) {
+        this.downgradeTicks = Math.max(0, downgradeTicks);
+    }
+
+    /**
+     * 开始预取并启动播放时钟
+     */
+    void start() {
+        startPrefetch(0);
+        clock = new PresentationClock(VideoProcessor.getTargetFps());
+        clock.start(System.nanoTime());
+    }
+
+    /**
+     * 从指定帧开始预取，替换正在运行的预取器
+     */
+    private void startPrefetch(int frameIndex) {
+        // 新的预取器在同一个预取线程中排在旧预取器之后，旧预取器读完当前帧退出后才开始
+        if (prefetcher != null) {
+            prefetcher.close();
+        }
+        if (pools[sourceIndex] == null) {
+            pools[sourceIndex] = FramePrefetcher.newPool(source, prefetchFrames);
+        }
+        prefetcher = new FramePrefetcher(source, frameIndex, prefetchFrames, logger, decoder,
+            pools[sourceIndex], decodeLatency, diffLatency);
+        prefetcher.start();
+    }
+
+    /**
+     * 添加订阅的屏幕
+     * 已经播放过帧时，新屏幕立即放置当前帧
+     */
+    void addScreen(Screen screen) {
+        screens.add(screen);
+        if (lastFrame != null) {
+            screen.placeFrame(lastFrame.retain());
+        }
+    }
+
+    /**
+     * 移除订阅的屏幕，没有屏幕订阅时关闭视频流
+     */
+    void removeScreen(Screen screen) {
+        screens.remove(screen);
+        if (screens.isEmpty()) {
+            close();
+        }
+    }
+
+    /**
+     * 推进到播放时钟对应的帧（每 tick 由主线程调用）
+     * 取出播放时钟已到期的最新帧，更早的帧直接丢弃；
+     * 缓冲区欠载时保持上一帧并记录欠载次数，不阻塞主线程
+     *
+     * @param now 当前时间（System.nanoTime）
+     */
+    void tick(long now) {
+        if (closed || clock.isPaused()) {
+            return;
+        }
+
+        int dueIndex = clock.frameAt(now);
+
+        if (!isWatched()) {
+            advanceUnwatched(dueIndex);
+            return;
+        }
+        if (prefetcher == null) {
+            // 重新有观看者，从播放时钟对应的帧开始预取，错过的帧不再解码
+            currentFrameIndex = Math.min(dueIndex, source.getFrameCount() - 1);
+            startPrefetch(currentFrameIndex);
+        }
+
+        FrameBuffer frame = null;
+        FrameBuffer head;
+        while ((head = prefetcher.peek()) != null && head.getIndex() <= dueIndex) {
+            prefetcher.poll();
+            if (frame != null) {
+                // 播放落后，跳过已过期的帧
+                frame.release();
+                droppedFrames++;
+            }
+            frame = head;
+        }
+
+        if (frame == null) {
+            // 重新有观看者的屏幕先用最新的帧重绘
+            if (lastFrame != null) {
+                for (Screen screen : screens) {
+                    if (screen.needsRepaint() && !screen.isCulled()) {
+                        screen.placeFrame(lastFrame.retain());
+                    }
+                }
+            }
+
+            if (prefetcher.isFinished()) {
+                if (looping) {
+                    // 循环播放，从第一帧重新开始
+                    seek(0);
+                    return;
+                }
+                finish();
+            } else if (currentFrameIndex <= dueIndex) {
+                // 到期的帧尚未解码完成
+                stallCount++;
+            }
+            return;
+        }
+
+        // 分发给所有有观看者的屏幕，每个放置器持有一个引用
+        for (Screen screen : screens) {
+            if (!screen.isCulled()) {
+                screen.placeFrame(frame.retain());
+            }
+        }
+
+        // 视频流自己保留最新的帧，供之后加入的屏幕使用
+        if (lastFrame != null) {
+            lastFrame.release();
+        }
+        lastFrame = frame;
+
+        // 移动到下一帧
+        currentFrameIndex = frame.getIndex() + 1;
+    }
+
+    /**
+     * 检查是否有屏幕的视距内有观看者
+     */
+    private boolean isWatched() {
+        for (Screen screen : screens) {
+            if (!screen.isCulled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 没有观看者时只推进播放时钟，停止预取，不解码也不放置帧
+     */
+    private void advanceUnwatched(int dueIndex) {
+        if (prefetcher != null) {
+            prefetcher.close();
+            prefetcher = null;
+        }
+        if (dueIndex < source.getFrameCount()) {
+            currentFrameIndex = dueIndex;
+        } else if (looping) {
+            seek(0);
+        } else {
+            finish();
+        }
+    }
+
+    /**
+     * 播放结束，屏幕保留最后一帧，剩余方块由 tick 任务继续写入
+     */
+    private void finish() {
+        logStats();
+        for (Screen screen : screens) {
+            screen.detach();
+        }
+        screens.clear();
+        close();
+    }
+
+    /**
+     * 检查方块写入是否超出时间预算（每 tick 在写入方块后由主线程调用）
+     * 任一屏幕在本 tick 写入后仍有未写入的方块即视为超出，连续超出达到设定的 tick 数时切换到更小的版本
+     * 播放调节器限制了写入预算时（部分更新、暂停）方块是有意顺延的，不计入超出，并重新计数
+     *
+     * @param level 本 tick 播放调节器的等级
+     */
+    void checkBudget(PlaybackGovernor.Level level) {
+        if (closed || clock.isPaused() || level.getBudgetFraction() < 1.0
+            || downgradeTicks == 0 || sourceIndex + 1 >= sources.size()) {
+            overBudgetTicks = 0;
+            return;
+        }
+
+        boolean overBudget = false;
+        for (Screen screen : screens) {
+            if (screen.getSink().hasPendingWrites()) {
+                overBudget = true;
+                break;
+            }
+        }
+
+        overBudgetTicks = overBudget ? overBudgetTicks + 1 : 0;
+        if (overBudgetTicks >= downgradeTicks) {
+            switchSource(sourceIndex + 1);
+        }
+    }
+
+    /**
+     * 切换到指定版本，从当前帧继续播放
+     * 各屏幕缩小到新的分辨率，新版本的第一帧完整写入
+     */
+    private void switchSource(int index) {
+        int oldWidth = getWidth();
+        int oldHeight = getHeight();
+
+        // 只会切换到更小的版本，之前版本的帧缓冲区不再需要
+        pools[sourceIndex] = null;
+        source = sources.get(index);
+        sourceIndex = index;
+        if (prefetcher != null) {
+            startPrefetch(currentFrameIndex);
+        }
+
+        // 上一帧的尺寸已不同，不再保留
+        if (lastFrame != null) {
+            lastFrame.release();
+            lastFrame = null;
+        }
+        for (Screen screen : screens) {
+            screen.resize(getWidth(), getHeight());
+        }
+        overBudgetTicks = 0;
+
+        logger.info("视频 " + name + " 方块写入持续超出预算，分辨率从 " + oldWidth + "x" + oldHeight
+            + " 切换到 " + getWidth() + "x" + getHeight());
+    }
+
+    /**
+     * 记录播放统计
+     */
+    private void logStats() {
+        long writes = 0;
+        long lookups = 0;
+        for (Screen screen : screens) {
+            FrameSink sink = screen.getSink();
+            writes += sink.getTotalWrites();
+            if (sink instanceof BlockPlacer) {
+                lookups += ((BlockPlacer) sink).getWriter().getChunkLookups();
+            }
+        }
+        logger.info("视频播放完成: " + name + "（屏幕 " + screens.size() + " 个，缓冲区欠载 " + stallCount
+            + " 次，丢弃 " + droppedFrames + " 帧，方块写入 " + writes + " 次，区块查找 " + lookups + " 次）");
+    }
+
+    /**
+     * 跳转到指定帧
+     * 重新从该帧开始预取（没有观看者时只移动播放时钟），各屏幕的放置器保留当前画面，只写入与目标帧不同的方块
+     *
+     * @param frameIndex 帧索引
+     */
+    public void seek(int frameIndex) {
+        if (closed) {
+            throw new IllegalStateException("视频流已关闭");
+        }
+        if (frameIndex < 0 || frameIndex >= source.getFrameCount()) {
+            throw new IllegalArgumentException("帧索引超出范围: " + frameIndex);
+        }
+
+        if (prefetcher != null) {
+            startPrefetch(frameIndex);
+        }
+
+        currentFrameIndex = frameIndex;
+        clock.seek(frameIndex, System.nanoTime());
+    }
+
+    /**
+     * 暂停播放，画面保持当前帧
+     */
+    public void pause() {
+        if (!closed) {
+            held = false;
+            clock.pause(System.nanoTime());
+        }
+    }
+
+    /**
+     * 恢复播放
+     */
+    public void resume() {
+        if (!closed) {
+            held = false;
+            clock.resume(System.nanoTime());
+        }
+    }
+
+    /**
+     * 播放调节器暂停播放时钟，恢复后从暂停处继续
+     * 已被手动暂停的视频流不受影响
+     */
+    void hold(long now) {
+        if (!closed && !held && !clock.isPaused()) {
+            clock.pause(now);
+            held = true;
+        }
+    }
+
+    /**
+     * 播放调节器恢复播放时钟
+     * 暂停期间手动暂停或恢复过的视频流保持手动设置的状态
+     */
+    void release(long now) {
+        if (held) {
+            held = false;
+            if (!closed) {
+                clock.resume(now);
+            }
+        }
+    }
+
+    /**
+     * 检查是否已手动暂停
+     */
+    public boolean isPaused() {
+        return !closed && clock.isPaused() && !held;
+    }
+
+    /**
+     * 检查是否被播放调节器暂停
+     */
+    public boolean isHeld() {
+        return !closed && held;
+    }
+
+    /**
+     * 设置是否循环播放
+     */
+    public void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    /**
+     * 检查是否循环播放
+     */
+    public boolean isLooping() {
+        return looping;
+    }
+
+    /**
+     * 关闭视频流，停止预取并关闭帧来源
+     * 帧来源在预取线程中关闭，正在读取的帧完成后才关闭，主线程不等待
+     * 各屏幕的放置器仍持有各自的上一帧，未写入的方块会继续写入
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (prefetcher != null) {
+            prefetcher.close();
+            prefetcher = null;
+        }
+        if (lastFrame != null) {
+            lastFrame.release();
+            lastFrame = null;
+        }
+
+        decoder.execute(() -> {
+            for (FrameSource frameSource : sources) {
+                try {
+                    frameSource.close();
+                } catch (IOException e) {
+                    logger.warning("关闭帧来源失败: " + e.getMessage());
+                }
+            }
+        });
+        decoder.shutdown();
+    }
+
+    /**
+     * 检查视频流是否已关闭
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 获取视频流标识
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 获取视频名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 获取订阅的屏幕数量
+     */
+    public int getScreenCount() {
+        return screens.size();
+    }
+
+    public int getWidth() {
+        return source.getWidth();
+    }
+
+    public int getHeight() {
+        return source.getHeight();
+    }
+
+    /**
+     * 获取当前使用的版本序号，0 为完整分辨率
+     */
+    public int getVariantIndex() {
+        return sourceIndex;
+    }
+
+    /**
+     * 获取可用的版本数量（包括完整分辨率）
+     */
+    public int getVariantCount() {
+        return sources.size();
+    }
+
+    /**
+     * 获取当前帧索引
+     */
+    public int getCurrentFrameIndex() {
+        return currentFrameIndex;
+    }
+
+    /**
+     * 获取总帧数
+     */
+    public int getTotalFrames() {
+        return source.getFrameCount();
+    }
+
+    /**
+     * 获取缓冲区欠载次数
+     */
+    public long getStallCount() {
+        return stallCount;
+    }
+
+    /**
+     * 获取因播放落后而丢弃的帧数
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * 获取预取缓冲区中已就绪的帧数
+     */
+    public int getBufferedFrames() {
+        return prefetcher != null ? prefetcher.getBufferedFrames() : 0;
+    }
+
+    /**
+     * 获取读取（解码）每帧的耗时
+     */
+    public LatencyHistogram getDecodeLatency() {
+        return decodeLatency;
+    }
+
+    /**
+     * 获取预取线程计算变化列表的耗时
+     */
+    public LatencyHistogram getDiffLatency() {
+        return diffLatency;
+    }
+
+    /**
+     * 清空播放统计
+     */
+    public void resetStats() {
+        stallCount = 0;
+        droppedFrames = 0;
+        decodeLatency.reset();
+        diffLatency.reset();
+    }
+}
@@ -0,0 +1,115 @@
+package com.videoplayermc;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 观看者列表
+ * 记录视距内能看到屏幕的观看者：观看者所在区块与屏幕覆盖的区块范围的距离不超过其视距
+ * 每次更新返回新进入范围的观看者，离开范围、切换世界或下线的观看者被移除
+ */
+public class ViewerTracker {
+
+    private final World world;
+    private final int minChunkX;
+    private final int maxChunkX;
+    private final int minChunkZ;
+    private final int maxChunkZ;
+
+    private final Map<UUID, FrameViewer> viewers = new LinkedHashMap<>();
+
+    /**
+     * @param world     屏幕所在的世界
+     * @param minChunkX 屏幕覆盖的最小区块 x
+     * @param maxChunkX 屏幕覆盖的最大区块 x
+     * @param minChunkZ 屏幕覆盖的最小区块 z
+     * @param maxChunkZ 屏幕覆盖的最大区块 z
+     */
+    public ViewerTracker(World world, int minChunkX, int maxChunkX, int minChunkZ, int maxChunkZ) {
+        this.world = world;
+        this.minChunkX = minChunkX;
+        this.maxChunkX = maxChunkX;
+        this.minChunkZ = minChunkZ;
+        this.maxChunkZ = maxChunkZ;
+    }
+
+    /**
+     * 创建覆盖指定区域的观看者列表（屏幕位于固定 z 平面）
+     *
+     * @param origin 屏幕起始位置
+     * @param width  屏幕宽度
+     * @param height 屏幕高度
+     */
+    public static ViewerTracker forArea(Location origin, int width, int height) {
+        int chunkZ = origin.getBlockZ() >> 4;
+        return new ViewerTracker(origin.getWorld(), origin.getBlockX() >> 4, (origin.getBlockX() + width - 1) >> 4, chunkZ, chunkZ);
+    }
+
+    /**
+     * 按候选观看者更新列表
+     *
+     * @param candidates 候选观看者（通常是屏幕所在世界的所有玩家）
+     * @return 新进入范围的观看者
+     */
+    public List<FrameViewer> update(Collection<? extends FrameViewer> candidates) {
+        List<FrameViewer> joined = new ArrayList<>();
+        Set<UUID> inRange = new HashSet<>();
+        for (FrameViewer viewer : candidates) {
+            if (!isInRange(viewer)) {
+                continue;
+            }
+            inRange.add(viewer.getId());
+            if (viewers.put(viewer.getId(), viewer) == null) {
+                joined.add(viewer);
+            }
+        }
+        viewers.keySet().retainAll(inRange);
+        return joined;
+    }
+
+    /**
+     * 检查观看者是否能看到屏幕
+     */
+    public boolean isInRange(FrameViewer viewer) {
+        if (!viewer.isOnline() || viewer.getWorld() != world) {
+            return false;
+        }
+        Location location = viewer.getLocation();
+        int chunkX = location.getBlockX() >> 4;
+        int chunkZ = location.getBlockZ() >> 4;
+        int dx = Math.max(0, Math.max(minChunkX - chunkX, chunkX - maxChunkX));
+        int dz = Math.max(0, Math.max(minChunkZ - chunkZ, chunkZ - maxChunkZ));
+        return Math.max(dx, dz) <= viewer.getViewDistance();
+    }
+
+    /**
+     * 移除所有观看者
+     */
+    public void clear() {
+        viewers.clear();
+    }
+
+    /**
+     * 获取当前的观看者
+     */
+    public Collection<FrameViewer> getViewers() {
+        return Collections.unmodifiableCollection(viewers.values());
+    }
+
+    /**
+     * 获取观看者数量
+     */
+    public int getViewerCount() {
+        return viewers.size();
+    }
+}